@@ -2,6 +2,7 @@
 module org.viablespark.persistence {
   exports org.viablespark.persistence;
   exports org.viablespark.persistence.dsl;
+  exports org.viablespark.persistence.cache;
 
   requires spring.jdbc;
   requires spring.core;
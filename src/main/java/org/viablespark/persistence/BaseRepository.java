@@ -14,33 +14,131 @@
 package org.viablespark.persistence;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
-import org.viablespark.persistence.dsl.Named;
-import org.viablespark.persistence.dsl.PrimaryKey;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.viablespark.persistence.cache.EntityCache;
+import org.viablespark.persistence.cache.QueryCache;
+import org.viablespark.persistence.dsl.CompiledQuery;
+import org.viablespark.persistence.dsl.Dialect;
+import org.viablespark.persistence.dsl.EntityMetadata;
 import org.viablespark.persistence.dsl.SqlClause;
 import org.viablespark.persistence.dsl.SqlQuery;
 import org.viablespark.persistence.dsl.WithSql;
-import org.viablespark.persistence.validation.SqlQueryValidator;
 
 public abstract class BaseRepository<E extends Persistable> {
 
+  /** Statements per JDBC batch used by {@link #saveAll(Collection)}. */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /** Rows fetched per round trip by {@link #streamEntity(SqlQuery, Class)}. */
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
   protected final JdbcTemplate jdbc;
   private static final Logger log = LoggerFactory.getLogger(BaseRepository.class);
+  private volatile DirtyTracker dirtyTracker;
+  private volatile Dialect dialect = Dialect.STANDARD;
+  private volatile EntityCache entityCache;
+  private volatile QueryCache queryCache;
+  private volatile int arrayBindingThreshold;
 
   @SuppressWarnings("exports")
   public BaseRepository(JdbcTemplate db) {
     this.jdbc = db;
   }
 
+  /**
+   * Turns dirty tracking on or off. While on, entities loaded or saved through this repository are
+   * snapshotted, and {@link #save(Persistable)} of an existing entity writes only the columns that
+   * changed since, skipping the statement entirely when none did. Batch updates always write every
+   * column. Off by default.
+   */
+  public void setDirtyTracking(boolean enabled) {
+    this.dirtyTracker = enabled ? new DirtyTracker() : null;
+  }
+
+  public boolean isDirtyTracking() {
+    return dirtyTracker != null;
+  }
+
+  /**
+   * Second-level cache consulted by {@link #get(Key, Class)} and {@link #getAll(Collection,
+   * Class)}, filled by those and {@link #queryEntity(SqlQuery, Class)}, and invalidated by every
+   * write or delete through this repository. Writes made elsewhere, including through another
+   * repository sharing the cache, are not seen until entries expire. {@code null} turns caching
+   * off, which is the default.
+   */
+  public void setEntityCache(EntityCache cache) {
+    this.entityCache = cache;
+  }
+
+  public EntityCache getEntityCache() {
+    return entityCache;
+  }
+
+  /**
+   * Result cache for {@link #queryEntity(SqlQuery, Class)}, keyed by the rendered statement and its
+   * values. Any write or delete through this repository invalidates the cached results for the
+   * entity's table. {@code null}, the default, turns it off.
+   */
+  public void setQueryCache(QueryCache cache) {
+    this.queryCache = cache;
+  }
+
+  public QueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  /**
+   * Updates only the given columns of an existing entity, whether or not dirty tracking is on.
+   * Column names are the ones the entity is mapped to, e.g. a {@code @Named} value.
+   */
+  public Optional<Key> update(E entity, String... columns) {
+    try {
+      if (entity.isNew()) {
+        throw new IllegalArgumentException("Entity has no primary key value to update by");
+      }
+      SqlClause updateClause = WithSql.getUpdateStatement(entity, List.of(columns));
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "Executing partial update for {} with SQL [{}] and values {}",
+            entity.getClass().getSimpleName(),
+            updateClause.clause(),
+            java.util.Arrays.toString(updateClause.values()));
+      }
+      jdbc.update(updateClause.clause(), updateClause.values());
+      invalidate(entity);
+      DirtyTracker tracker = dirtyTracker;
+      if (tracker != null) {
+        Map<String, Object> written = new HashMap<>(WithSql.getColumnValues(entity));
+        written.keySet().retainAll(List.of(columns));
+        tracker.refresh(entity, written);
+      }
+      return Optional.ofNullable(entity.getRefs());
+    } catch (Exception e) {
+      String description = describeEntity(entity);
+      log.error("Failed to update entity {}", description, e);
+      throw new RuntimeException("Failed to update entity: " + description, e);
+    }
+  }
+
   public Optional<Key> save(E entity) {
     try {
       if (entity.isNew()) {
@@ -55,11 +153,352 @@ public abstract class BaseRepository<E extends Persistable> {
     }
   }
 
+  /**
+   * Saves every entity, inserting new ones through JDBC batches of {@link #DEFAULT_BATCH_SIZE}
+   * statements. Returns the keys in the order of {@code entities}.
+   */
+  public List<Key> saveAll(Collection<? extends E> entities) {
+    return saveAll(entities, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Saves every entity, inserting new ones through JDBC batches of at most {@code batchSize}
+   * statements. Inserts are grouped by statement, so entities of different classes or with
+   * different {@code @Ref} columns present go into separate batches; generated keys are assigned
+   * back through {@link Persistable#setRefs(Key)}. Existing entities are updated through {@link
+   * #updateAll(Collection, int)}. Returns the keys in the order of {@code entities}. A driver that
+   * does not return one generated key per inserted row fails with {@link IllegalStateException}.
+   */
+  public List<Key> saveAll(Collection<? extends E> entities, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    Map<String, List<E>> pendingEntities = new LinkedHashMap<>();
+    Map<String, List<Object[]>> pendingValues = new HashMap<>();
+    List<E> existing = new ArrayList<>();
+    for (E entity : entities) {
+      if (!entity.isNew()) {
+        existing.add(entity);
+        continue;
+      }
+      SqlClause insert;
+      try {
+        insert = WithSql.getInsertStatement(entity);
+      } catch (Exception e) {
+        String description = describeEntity(entity);
+        log.error("Failed to save entity {}", description, e);
+        throw new RuntimeException("Failed to save entity: " + description, e);
+      }
+      List<E> batch = pendingEntities.computeIfAbsent(insert.clause(), k -> new ArrayList<>());
+      List<Object[]> values =
+          pendingValues.computeIfAbsent(insert.clause(), k -> new ArrayList<>());
+      batch.add(entity);
+      values.add(insert.values());
+      if (batch.size() >= batchSize) {
+        insertBatch(insert.clause(), batch, values);
+        batch.clear();
+        values.clear();
+      }
+    }
+    pendingEntities.forEach(
+        (sql, batch) -> {
+          if (!batch.isEmpty()) {
+            insertBatch(sql, batch, pendingValues.get(sql));
+          }
+        });
+    if (!existing.isEmpty()) {
+      updateAll(existing, batchSize);
+    }
+
+    List<Key> keys = new ArrayList<>(entities.size());
+    for (E entity : entities) {
+      keys.add(entity.getRefs());
+    }
+    return keys;
+  }
+
+  /** SQL dialect used for statements standard SQL does not cover, such as upserts. */
+  public void setDialect(Dialect dialect) {
+    if (dialect == null) {
+      throw new IllegalArgumentException("Dialect must not be null");
+    }
+    this.dialect = dialect;
+  }
+
+  public Dialect getDialect() {
+    return dialect;
+  }
+
+  /**
+   * Key sets of at least {@code threshold} keys are passed to {@link #getAll(Collection, Class)}
+   * and {@link #deleteByKeys(Class, Collection)} as one SQL {@code ARRAY} parameter, in a single
+   * statement, when the {@link #setDialect(Dialect) dialect} supports it; see {@link
+   * Dialect#anyOf(String)}. Zero, the default, keeps to chunked {@code IN} lists.
+   */
+  public void setArrayBindingThreshold(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Array binding threshold must not be negative");
+    }
+    this.arrayBindingThreshold = threshold;
+  }
+
+  public int getArrayBindingThreshold() {
+    return arrayBindingThreshold;
+  }
+
+  /**
+   * Inserts {@code entity}, or updates the row with the same primary key when there is one, in a
+   * single statement. An entity without a key value is simply inserted.
+   */
+  public Optional<Key> upsert(E entity) {
+    try {
+      if (entity.isNew()) {
+        return insertEntity(entity);
+      }
+      SqlClause upsert = WithSql.getUpsertStatement(entity, dialect);
+      if (log.isDebugEnabled()) {
+        log.debug(
+            "Executing upsert for {} with SQL [{}] and values {}",
+            entity.getClass().getSimpleName(),
+            upsert.clause(),
+            java.util.Arrays.toString(upsert.values()));
+      }
+      jdbc.update(upsert.clause(), upsert.values());
+      written(entity);
+      return Optional.of(entity.getRefs());
+    } catch (Exception e) {
+      String description = describeEntity(entity);
+      log.error("Failed to upsert entity {}", description, e);
+      throw new RuntimeException("Failed to upsert entity: " + description, e);
+    }
+  }
+
+  /** Upserts every entity through JDBC batches of {@link #DEFAULT_BATCH_SIZE} statements. */
+  public List<Key> upsertAll(Collection<? extends E> entities) {
+    return upsertAll(entities, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Upserts every entity through JDBC batches of at most {@code batchSize} statements, grouped by
+   * statement. Entities without a key value are inserted as by {@link #saveAll(Collection, int)}.
+   * Returns the keys in the order of {@code entities}.
+   */
+  public List<Key> upsertAll(Collection<? extends E> entities, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    Dialect current = dialect;
+    List<E> fresh = new ArrayList<>();
+    Map<String, List<E>> pendingEntities = new LinkedHashMap<>();
+    Map<String, List<Object[]>> pendingValues = new HashMap<>();
+    for (E entity : entities) {
+      if (entity.isNew()) {
+        fresh.add(entity);
+        continue;
+      }
+      SqlClause upsert;
+      try {
+        upsert = WithSql.getUpsertStatement(entity, current);
+      } catch (Exception e) {
+        String description = describeEntity(entity);
+        log.error("Failed to upsert entity {}", description, e);
+        throw new RuntimeException("Failed to upsert entity: " + description, e);
+      }
+      List<E> batch = pendingEntities.computeIfAbsent(upsert.clause(), k -> new ArrayList<>());
+      List<Object[]> values =
+          pendingValues.computeIfAbsent(upsert.clause(), k -> new ArrayList<>());
+      batch.add(entity);
+      values.add(upsert.values());
+      if (batch.size() >= batchSize) {
+        upsertBatch(upsert.clause(), batch, values);
+        batch.clear();
+        values.clear();
+      }
+    }
+    pendingEntities.forEach(
+        (sql, batch) -> {
+          if (!batch.isEmpty()) {
+            upsertBatch(sql, batch, pendingValues.get(sql));
+          }
+        });
+    if (!fresh.isEmpty()) {
+      saveAll(fresh, batchSize);
+    }
+
+    List<Key> keys = new ArrayList<>(entities.size());
+    for (E entity : entities) {
+      keys.add(entity.getRefs());
+    }
+    return keys;
+  }
+
+  private void upsertBatch(String sql, List<E> batch, List<Object[]> values) {
+    if (log.isDebugEnabled()) {
+      log.debug("Executing batch upsert of {} rows with SQL [{}]", batch.size(), sql);
+    }
+    try {
+      jdbc.batchUpdate(sql, values);
+    } catch (RuntimeException ex) {
+      log.error("Failed to execute batch upsert of {} rows with SQL [{}]", batch.size(), sql, ex);
+      throw new RuntimeException(
+          String.format(
+              "Failed to upsert batch of %d %s entities",
+              batch.size(), batch.get(0).getClass().getName()),
+          ex);
+    }
+    batch.forEach(this::written);
+  }
+
+  /** Updates every entity through JDBC batches of {@link #DEFAULT_BATCH_SIZE} statements. */
+  public UpdateResult<E> updateAll(Collection<? extends E> entities) {
+    return updateAll(entities, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Updates every entity through JDBC batches of at most {@code batchSize} statements, grouped by
+   * their {@code SET ... WHERE pk=?} shape. Entities whose update matched no row are reported in
+   * the result rather than failing the call.
+   */
+  public UpdateResult<E> updateAll(Collection<? extends E> entities, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    List<E> ordered = new ArrayList<>(entities);
+    int[] counts = new int[ordered.size()];
+    Map<String, List<Integer>> pendingIndexes = new LinkedHashMap<>();
+    Map<String, List<Object[]>> pendingValues = new HashMap<>();
+    for (int i = 0; i < ordered.size(); i++) {
+      E entity = ordered.get(i);
+      SqlClause update;
+      try {
+        if (entity.isNew()) {
+          throw new IllegalArgumentException("Entity has no primary key value to update by");
+        }
+        update = WithSql.getUpdateStatement(entity);
+      } catch (Exception e) {
+        String description = describeEntity(entity);
+        log.error("Failed to save entity {}", description, e);
+        throw new RuntimeException("Failed to save entity: " + description, e);
+      }
+      List<Integer> indexes =
+          pendingIndexes.computeIfAbsent(update.clause(), k -> new ArrayList<>());
+      List<Object[]> values =
+          pendingValues.computeIfAbsent(update.clause(), k -> new ArrayList<>());
+      indexes.add(i);
+      values.add(update.values());
+      if (indexes.size() >= batchSize) {
+        updateBatch(update.clause(), indexes, values, counts);
+        indexes.clear();
+        values.clear();
+      }
+    }
+    pendingIndexes.forEach(
+        (sql, indexes) -> {
+          if (!indexes.isEmpty()) {
+            updateBatch(sql, indexes, pendingValues.get(sql), counts);
+          }
+        });
+
+    List<Integer> rowCounts = new ArrayList<>(counts.length);
+    List<E> unmatched = new ArrayList<>();
+    for (int i = 0; i < counts.length; i++) {
+      rowCounts.add(counts[i]);
+      invalidate(ordered.get(i));
+      if (counts[i] == 0) {
+        unmatched.add(ordered.get(i));
+      } else {
+        track(ordered.get(i));
+      }
+    }
+    if (!unmatched.isEmpty()) {
+      log.debug(
+          "Batch update matched no row for {} of {} entities", unmatched.size(), counts.length);
+    }
+    return new UpdateResult<>(rowCounts, unmatched);
+  }
+
+  private void updateBatch(String sql, List<Integer> indexes, List<Object[]> values, int[] counts) {
+    if (log.isDebugEnabled()) {
+      log.debug("Executing batch update of {} rows with SQL [{}]", indexes.size(), sql);
+    }
+    int[] batchCounts;
+    try {
+      batchCounts = jdbc.batchUpdate(sql, values);
+    } catch (RuntimeException ex) {
+      log.error("Failed to execute batch update of {} rows with SQL [{}]", indexes.size(), sql, ex);
+      throw new RuntimeException(
+          String.format("Failed to update batch of %d rows with SQL [%s]", indexes.size(), sql),
+          ex);
+    }
+    for (int i = 0; i < indexes.size(); i++) {
+      counts[indexes.get(i)] = i < batchCounts.length ? batchCounts[i] : Statement.SUCCESS_NO_INFO;
+    }
+  }
+
+  private void insertBatch(String sql, List<E> batch, List<Object[]> values) {
+    if (log.isDebugEnabled()) {
+      log.debug("Executing batch insert of {} rows with SQL [{}]", batch.size(), sql);
+    }
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    try {
+      jdbc.batchUpdate(
+          connection -> connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+          new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+              Object[] args = values.get(i);
+              for (int j = 0; j < args.length; j++) {
+                ps.setObject(j + 1, args[j]);
+              }
+            }
+
+            @Override
+            public int getBatchSize() {
+              return values.size();
+            }
+          },
+          keyHolder);
+    } catch (RuntimeException ex) {
+      log.error("Failed to execute batch insert of {} rows with SQL [{}]", batch.size(), sql, ex);
+      throw new RuntimeException(
+          String.format(
+              "Failed to save batch of %d %s entities",
+              batch.size(), batch.get(0).getClass().getName()),
+          ex);
+    }
+
+    List<Map<String, Object>> generated = keyHolder.getKeyList();
+    if (generated.size() != batch.size()) {
+      throw new IllegalStateException(
+          String.format(
+              "Expected %d generated keys for batch insert but driver returned %d",
+              batch.size(), generated.size()));
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      E entity = batch.get(i);
+      String primaryKey = EntityMetadata.of(entity.getClass()).primaryKey().orElseThrow();
+      entity.setRefs(Key.of(primaryKey, generatedKey(generated.get(i), primaryKey)));
+      written(entity);
+    }
+  }
+
+  private static Long generatedKey(Map<String, Object> keys, String primaryKey) {
+    Object value = keys.size() == 1 ? keys.values().iterator().next() : null;
+    for (Map.Entry<String, Object> entry : keys.entrySet()) {
+      if (entry.getKey().equalsIgnoreCase(primaryKey)) {
+        value = entry.getValue();
+      }
+    }
+    if (!(value instanceof Number number)) {
+      throw new IllegalStateException(
+          String.format("No numeric generated key '%s' in %s", primaryKey, keys));
+    }
+    return number.longValue();
+  }
+
   private Optional<Key> insertEntity(E entity) throws Exception {
-    SqlClause insertClause = WithSql.getInsertClause(entity);
-    String sql =
-        String.format(
-            "INSERT INTO %s %s", deriveEntityName(entity.getClass()), insertClause.clause());
+    SqlClause insertClause = WithSql.getInsertStatement(entity);
+    String sql = insertClause.clause();
     if (log.isDebugEnabled()) {
       log.debug(
           "Executing insert for {} with SQL [{}] and values {}",
@@ -72,17 +511,33 @@ public abstract class BaseRepository<E extends Persistable> {
     if (keyHolder.getKeys() != null) {
       entity.setRefs(
           Key.of(
-              entity.getClass().getAnnotation(PrimaryKey.class).value(),
+              EntityMetadata.of(entity.getClass()).primaryKey().orElseThrow(),
               keyHolder.getKey().longValue()));
     }
+    written(entity);
 
     return Optional.of(entity.getRefs());
   }
 
   private Optional<Key> updateEntity(E entity) throws Exception {
-    SqlClause updateClause = WithSql.getUpdateClause(entity);
-    String sql =
-        String.format("UPDATE %s %s", deriveEntityName(entity.getClass()), updateClause.clause());
+    DirtyTracker tracker = dirtyTracker;
+    Map<String, Object> current = null;
+    SqlClause updateClause;
+    if (tracker != null) {
+      current = WithSql.getColumnValues(entity);
+      List<String> changed = tracker.changedColumns(entity, current);
+      if (changed != null && changed.isEmpty()) {
+        log.debug("Skipping update of unchanged {}", describeEntity(entity));
+        return Optional.ofNullable(entity.getRefs());
+      }
+      updateClause =
+          changed == null
+              ? WithSql.getUpdateStatement(entity)
+              : WithSql.getUpdateStatement(entity, changed);
+    } else {
+      updateClause = WithSql.getUpdateStatement(entity);
+    }
+    String sql = updateClause.clause();
     if (log.isDebugEnabled()) {
       log.debug(
           "Executing update for {} with SQL [{}] and values {}",
@@ -91,28 +546,247 @@ public abstract class BaseRepository<E extends Persistable> {
           java.util.Arrays.toString(updateClause.values()));
     }
     jdbc.update(sql, updateClause.values());
+    invalidate(entity);
+    if (tracker != null) {
+      tracker.snapshot(entity, current);
+    }
 
     return Optional.ofNullable(entity.getRefs());
   }
 
+  /** Snapshots {@code entity} when dirty tracking is on. */
+  private E track(E entity) {
+    DirtyTracker tracker = dirtyTracker;
+    if (tracker != null && entity != null) {
+      try {
+        tracker.snapshot(entity, WithSql.getColumnValues(entity));
+      } catch (SQLException ex) {
+        log.debug("Unable to snapshot {}; it will be fully updated", describeEntity(entity), ex);
+      }
+    }
+    return entity;
+  }
+
+  /**
+   * Returns the instance of the open {@link UnitOfWork} for a loaded entity, registering and
+   * tracking {@code entity} when it is the first one.
+   */
+  private E manage(E entity) {
+    UnitOfWork uow = UnitOfWork.active();
+    if (uow != null) {
+      E managed = uow.register(entity);
+      if (managed != entity) {
+        return managed;
+      }
+    }
+    return track(entity);
+  }
+
+  private static <T extends Persistable> RowMapper<T> entityMapper(
+      CompiledQuery query, Class<T> cls) {
+    List<String> refs = query.fetchedRefs();
+    return refs.isEmpty() ? PersistableRowMapper.of(cls) : new FetchingRowMapper<>(cls, refs);
+  }
+
+  /** Tracks an entity just written and makes it the instance of the open unit of work. */
+  private void written(E entity) {
+    UnitOfWork uow = UnitOfWork.active();
+    if (uow != null) {
+      uow.put(entity);
+    }
+    invalidate(entity);
+    track(entity);
+  }
+
+  private void untrack(Persistable entity) {
+    DirtyTracker tracker = dirtyTracker;
+    if (tracker != null) {
+      tracker.forget(entity);
+    }
+    UnitOfWork uow = UnitOfWork.active();
+    if (uow != null) {
+      uow.evict(entity);
+    }
+    invalidate(entity);
+  }
+
+  private void invalidate(Persistable entity) {
+    EntityCache cache = entityCache;
+    if (cache != null) {
+      cache.evict(entity.getClass(), entity.getRefs());
+    }
+    invalidateQueries(entity.getClass());
+  }
+
+  private void invalidateQueries(Class<?> cls) {
+    QueryCache results = queryCache;
+    if (results != null) {
+      results.invalidate(EntityMetadata.of(cls).tableName());
+    }
+  }
+
+  private E cache(E entity) {
+    EntityCache cache = entityCache;
+    if (cache != null) {
+      cache.put(entity);
+    }
+    return entity;
+  }
+
+  /** Opens a {@link UnitOfWork} on the current thread; see there. */
+  public UnitOfWork beginUnitOfWork() {
+    return UnitOfWork.begin();
+  }
+
   public void delete(E entity) {
     String sql =
-        String.format(
-            "DELETE FROM %s WHERE %s = ?",
-            deriveEntityName(entity.getClass()), entity.getRefs().primaryKey().getKey());
+        WithSql.getDeleteStatement(entity.getClass(), entity.getRefs().primaryKey().getKey());
     if (log.isDebugEnabled()) {
       log.debug("Deleting entity {} using SQL [{}]", describeEntity(entity), sql);
     }
     jdbc.update(sql, entity.getRefs().primaryKey().getValue());
+    untrack(entity);
+  }
+
+  /** Deletes every entity by its key, in chunks of {@link #DEFAULT_BATCH_SIZE} keys. */
+  public int deleteAll(Collection<? extends E> entities) {
+    return deleteAll(entities, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Deletes every entity by its key with one {@code DELETE ... IN (...)} statement per class and
+   * chunk of at most {@code chunkSize} keys. Returns the total number of deleted rows.
+   */
+  public int deleteAll(Collection<? extends E> entities, int chunkSize) {
+    Map<Class<?>, List<Key>> keysByClass = new LinkedHashMap<>();
+    for (E entity : entities) {
+      keysByClass.computeIfAbsent(entity.getClass(), k -> new ArrayList<>()).add(entity.getRefs());
+    }
+    int deleted = 0;
+    for (Map.Entry<Class<?>, List<Key>> entry : keysByClass.entrySet()) {
+      deleted += deleteKeys(entry.getKey(), entry.getValue(), chunkSize);
+    }
+    entities.forEach(this::untrack);
+    return deleted;
+  }
+
+  /**
+   * Deletes the rows of {@code cls} with the given keys, in chunks of {@link #DEFAULT_BATCH_SIZE}.
+   */
+  public int deleteByKeys(Class<? extends E> cls, Collection<Key> keys) {
+    return deleteByKeys(cls, keys, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Deletes the rows of {@code cls} with the given keys using {@code DELETE ... WHERE pk IN (...)}
+   * statements of at most {@code chunkSize} keys each. Composite keys ({@link Key#count()} greater
+   * than one) are matched with a row-value predicate over all their columns. Key lists are padded
+   * to the sizes of {@link WithSql#bucketSize(int, int)}, unless single-column keys are bound as
+   * one array, see {@link #setArrayBindingThreshold(int)}. Returns the total number of deleted
+   * rows.
+   */
+  public int deleteByKeys(Class<? extends E> cls, Collection<Key> keys, int chunkSize) {
+    int deleted = deleteKeys(cls, keys, chunkSize);
+    UnitOfWork uow = UnitOfWork.active();
+    if (uow != null) {
+      keys.forEach(key -> uow.evict(cls, key));
+    }
+    EntityCache cache = entityCache;
+    if (cache != null) {
+      keys.forEach(key -> cache.evict(cls, key));
+    }
+    invalidateQueries(cls);
+    return deleted;
+  }
+
+  private int deleteKeys(Class<?> cls, Collection<Key> keys, int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    Map<List<String>, List<Key>> keysByColumns = new LinkedHashMap<>();
+    for (Key key : keys) {
+      if (key == null || key.count() == 0) {
+        throw new IllegalArgumentException("Cannot delete " + cls.getName() + " without a key");
+      }
+      List<String> columns = new ArrayList<>(key.count());
+      for (Pair<String, Long> pair : key.getKeys()) {
+        columns.add(pair.getKey());
+      }
+      keysByColumns.computeIfAbsent(columns, k -> new ArrayList<>()).add(key);
+    }
+
+    int deleted = 0;
+    for (Map.Entry<List<String>, List<Key>> entry : keysByColumns.entrySet()) {
+      List<String> columns = entry.getKey();
+      List<Key> group = entry.getValue();
+      String arraySql =
+          columns.size() == 1 && bindsAsArray(group.size())
+              ? WithSql.getDeleteByKeyArrayStatement(cls, columns.get(0), dialect)
+              : null;
+      if (arraySql != null) {
+        Object[] ids = new Object[group.size()];
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = group.get(i).primaryKey().getValue();
+        }
+        deleted += deleteRows(cls, arraySql, new Object[] {arrayOf(ids)}, ids.length);
+        continue;
+      }
+      for (int from = 0; from < group.size(); from += chunkSize) {
+        List<Key> chunk = group.subList(from, Math.min(from + chunkSize, group.size()));
+        int size = WithSql.bucketSize(chunk.size(), chunkSize);
+        String sql = WithSql.getDeleteByKeysStatement(cls, columns, size);
+        Object[] values = new Object[size * columns.size()];
+        int i = 0;
+        for (int k = 0; k < size; k++) {
+          Key key = chunk.get(Math.min(k, chunk.size() - 1));
+          for (Pair<String, Long> pair : key.getKeys()) {
+            values[i++] = pair.getValue();
+          }
+        }
+        deleted += deleteRows(cls, sql, values, chunk.size());
+      }
+    }
+    return deleted;
+  }
+
+  private int deleteRows(Class<?> cls, String sql, Object[] values, int count) {
+    if (log.isDebugEnabled()) {
+      log.debug("Deleting {} {} rows using SQL [{}]", count, cls.getSimpleName(), sql);
+    }
+    try {
+      return jdbc.update(sql, values);
+    } catch (RuntimeException ex) {
+      log.error("Failed to delete {} {} rows with SQL [{}]", count, cls.getName(), sql, ex);
+      throw ex;
+    }
+  }
+
+  private boolean bindsAsArray(int count) {
+    int threshold = arrayBindingThreshold;
+    return threshold > 0 && count >= threshold;
+  }
+
+  /** Keys bound as one {@code BIGINT} array, see {@link #setArrayBindingThreshold(int)}. */
+  private static SqlArrayValue arrayOf(Object[] ids) {
+    return new SqlArrayValue("BIGINT", ids);
   }
 
   public Optional<E> get(Key key, Class<E> cls) {
-    String sql =
-        String.format(
-            "SELECT %s FROM %s WHERE %s = ?",
-            WithSql.getSelectClause(cls, key.primaryKey().getKey()),
-            deriveEntityName(cls),
-            key.primaryKey().getKey());
+    UnitOfWork uow = UnitOfWork.active();
+    if (uow != null) {
+      Optional<E> loaded = uow.find(cls, key);
+      if (loaded.isPresent()) {
+        return loaded;
+      }
+    }
+    EntityCache cache = entityCache;
+    if (cache != null) {
+      Optional<E> cached = cache.get(cls, key);
+      if (cached.isPresent()) {
+        return cached.map(this::manage);
+      }
+    }
+    String sql = WithSql.getSelectByKeyStatement(cls, key.primaryKey().getKey());
     if (log.isDebugEnabled()) {
       log.debug("Fetching {} using SQL [{}] and key {}", cls.getSimpleName(), sql, key);
     }
@@ -130,64 +804,363 @@ public abstract class BaseRepository<E extends Persistable> {
         .map(
             entity -> {
               entity.setRefs(key);
-              return entity;
+              return manage(cache(entity));
+            });
+  }
+
+  /**
+   * Loads the entities with the given keys using {@code SELECT ... WHERE pk IN (...)} statements of
+   * at most {@link #DEFAULT_BATCH_SIZE} keys, padded to the sizes of {@link WithSql#bucketSize(int,
+   * int)}. The map follows the order of {@code keys} and leaves out keys without a row; as with
+   * {@link #get(Key, Class)}, each entity gets the requested key. Large key sets may be loaded in
+   * one statement instead, see {@link #setArrayBindingThreshold(int)}. Only single-column keys are
+   * accepted; composite keys fail with {@link IllegalArgumentException}.
+   */
+  public Map<Key, E> getAll(Collection<Key> keys, Class<E> cls) {
+    Map<Long, Key> requested = new LinkedHashMap<>();
+    String primaryKey = null;
+    for (Key key : keys) {
+      Pair<String, Long> pk = key.primaryKey();
+      if (pk == null) {
+        throw new IllegalArgumentException("Cannot get " + cls.getName() + " without a key");
+      }
+      if (key.count() > 1) {
+        throw new IllegalArgumentException(
+            "Composite keys are not supported by getAll, use get(Key, Class): " + key);
+      }
+      if (primaryKey == null) {
+        primaryKey = pk.getKey();
+      } else if (!primaryKey.equals(pk.getKey())) {
+        throw new IllegalArgumentException(
+            String.format(
+                "All keys must name the same column, found '%s' and '%s'",
+                primaryKey, pk.getKey()));
+      }
+      requested.putIfAbsent(pk.getValue(), key);
+    }
+    if (requested.isEmpty()) {
+      return new LinkedHashMap<>();
+    }
+
+    Map<Long, E> loaded = new HashMap<>();
+    UnitOfWork uow = UnitOfWork.active();
+    if (uow != null) {
+      requested.forEach((id, key) -> uow.find(cls, key).ifPresent(e -> loaded.put(id, e)));
+    }
+    EntityCache cache = entityCache;
+    if (cache != null) {
+      requested.forEach(
+          (id, key) -> {
+            if (!loaded.containsKey(id)) {
+              cache.get(cls, key).ifPresent(e -> loaded.put(id, manage(e)));
+            }
+          });
+    }
+    List<Long> ids = new ArrayList<>(requested.keySet());
+    ids.removeAll(loaded.keySet());
+    Map<Long, E> found = selectByIds(cls, primaryKey, ids, "getAll");
+
+    Map<Key, E> result = new LinkedHashMap<>(found.size() * 2);
+    requested.forEach(
+        (id, key) -> {
+          E entity = found.get(id);
+          if (entity != null) {
+            entity.setRefs(key);
+            result.put(key, manage(cache(entity)));
+          } else if (loaded.containsKey(id)) {
+            result.put(key, loaded.get(id));
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Rows of {@code cls} with the given primary key values, by value, loaded through chunked {@code
+   * IN} lists or one array parameter, see {@link #setArrayBindingThreshold(int)}.
+   */
+  private <T extends Persistable> Map<Long, T> selectByIds(
+      Class<T> cls, String primaryKey, List<Long> ids, String operation) {
+    Map<Long, T> found = new HashMap<>(ids.size() * 2);
+    PersistableRowMapper<T> mapper = PersistableRowMapper.of(cls);
+    String arraySql =
+        bindsAsArray(ids.size())
+            ? WithSql.getSelectByKeyArrayStatement(cls, primaryKey, dialect)
+            : null;
+    int chunkSize = arraySql != null ? ids.size() : DEFAULT_BATCH_SIZE;
+    for (int from = 0; from < ids.size(); from += chunkSize) {
+      List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+      String sql = arraySql;
+      Object[] values;
+      if (sql != null) {
+        values = new Object[] {arrayOf(chunk.toArray())};
+      } else {
+        int size = WithSql.bucketSize(chunk.size(), DEFAULT_BATCH_SIZE);
+        values = new Object[size];
+        for (int i = 0; i < size; i++) {
+          values[i] = chunk.get(Math.min(i, chunk.size() - 1));
+        }
+        sql = WithSql.getSelectByKeysStatement(cls, primaryKey, size);
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Fetching {} {} rows using SQL [{}]", chunk.size(), cls.getSimpleName(), sql);
+      }
+      try {
+        // the key column leads the select list, see WithSql.getSelectFromStatement
+        jdbc.query(
+            sql, (rs, rowNum) -> found.put(rs.getLong(1), mapper.mapRow(rs, rowNum)), values);
+      } catch (RuntimeException ex) {
+        log.error(
+            "Failed to execute {} for {} with SQL [{}] and keys {}",
+            operation,
+            cls.getName(),
+            sql,
+            chunk,
+            ex);
+        throw ex;
+      }
+    }
+    return found;
+  }
+
+  /** Like {@link #getAll(Collection, Class)} but returns the found entities in key order. */
+  public List<E> getAllOrdered(Collection<Key> keys, Class<E> cls) {
+    return new ArrayList<>(getAll(keys, cls).values());
+  }
+
+  /**
+   * Replaces the key-only instances held by the given {@code @Ref} properties, such as {@code
+   * contractor}, of each of {@code entities} with loaded ones. Each referenced type is queried once
+   * for all its distinct keys, in chunks as by {@link #getAll(Collection, Class)}, instead of once
+   * per entity; references held by the open {@link UnitOfWork} or the entity cache are not queried
+   * at all. References without a row are left as they are. Returns {@code entities}.
+   *
+   * <pre>{@code
+   * repository.fetchRefs(proposals, "contractor");
+   * }</pre>
+   */
+  public List<E> fetchRefs(List<E> entities, String... refs) {
+    Map<Class<?>, Map<Long, List<RefSlot>>> slotsByType = new LinkedHashMap<>();
+    for (String ref : refs) {
+      Map<Class<?>, EntityMetadata.Property> properties = new HashMap<>();
+      for (E entity : entities) {
+        EntityMetadata.Property property =
+            properties.computeIfAbsent(entity.getClass(), c -> refProperty(c, ref));
+        Persistable target = readRef(entity, property);
+        Pair<String, Long> pk =
+            target == null || target.getRefs() == null ? null : target.getRefs().primaryKey();
+        if (pk == null || pk.getValue() == null) {
+          continue;
+        }
+        slotsByType
+            .computeIfAbsent(target.getClass(), type -> new LinkedHashMap<>())
+            .computeIfAbsent(pk.getValue(), id -> new ArrayList<>())
+            .add(new RefSlot(entity, property));
+      }
+    }
+    slotsByType.forEach(this::loadRefs);
+    return entities;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void loadRefs(Class<?> type, Map<Long, List<RefSlot>> slots) {
+    Class<Persistable> cls = (Class<Persistable>) type;
+    String primaryKey =
+        EntityMetadata.of(cls)
+            .primaryKey()
+            .orElseThrow(() -> new IllegalArgumentException(cls.getName() + " has no @PrimaryKey"));
+    UnitOfWork uow = UnitOfWork.active();
+    EntityCache cache = entityCache;
+    Map<Long, Persistable> loaded = new HashMap<>(slots.size() * 2);
+    List<Long> ids = new ArrayList<>();
+    for (Long id : slots.keySet()) {
+      Key key = Key.of(primaryKey, id);
+      Persistable found = uow == null ? null : uow.find(cls, key).orElse(null);
+      if (found == null && cache != null) {
+        found = cache.get(cls, key).map(e -> uow == null ? e : uow.register(e)).orElse(null);
+      }
+      if (found != null) {
+        loaded.put(id, found);
+      } else {
+        ids.add(id);
+      }
+    }
+    selectByIds(cls, primaryKey, ids, "fetchRefs")
+        .forEach(
+            (id, entity) -> {
+              if (cache != null) {
+                cache.put(entity);
+              }
+              loaded.put(id, uow == null ? entity : uow.register(entity));
             });
+    slots.forEach(
+        (id, targets) -> {
+          Persistable ref = loaded.get(id);
+          if (ref != null) {
+            targets.forEach(slot -> slot.set(ref));
+          }
+        });
+  }
+
+  /** The {@code @Ref} property named {@code ref} of {@code type} or one of its superclasses. */
+  private static EntityMetadata.Property refProperty(Class<?> type, String ref) {
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      Optional<EntityMetadata.Property> property = EntityMetadata.of(c).foreignRef(ref);
+      if (property.isPresent() && property.get().setter().isPresent()) {
+        return property.get();
+      }
+    }
+    throw new IllegalArgumentException(
+        String.format("%s has no @Ref property '%s' with a setter", type.getName(), ref));
+  }
+
+  private static Persistable readRef(Persistable entity, EntityMetadata.Property property) {
+    try {
+      return (Persistable) property.get(entity);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException(
+          "Cannot read " + property.name() + " of " + entity.getClass().getName(), ex);
+    }
+  }
+
+  /** A {@code @Ref} property of one entity, to be set to the loaded reference. */
+  private record RefSlot(Persistable owner, EntityMetadata.Property property) {
+    void set(Persistable ref) {
+      try {
+        property.set(owner, ref);
+      } catch (ReflectiveOperationException ex) {
+        throw new IllegalStateException(
+            "Cannot set " + property.name() + " of " + owner.getClass().getName(), ex);
+      }
+    }
   }
 
   public List<E> queryEntity(SqlQuery query, Class<E> cls) {
-    var primaryKeyName =
-        cls.isAnnotationPresent(PrimaryKey.class)
-            ? cls.getAnnotation(PrimaryKey.class).value()
-            : query.getPrimaryKeyName();
-    SqlQueryValidator.assertPlaceholderCount(query);
-    String sql =
-        String.format(
-            "SELECT %s FROM %s %s",
-            WithSql.getSelectClause(cls, primaryKeyName), deriveEntityName(cls), query.sql());
+    return queryEntity(query.compile(), cls);
+  }
+
+  /** Runs a query compiled once up front; see {@link SqlQuery#compile()}. */
+  public List<E> queryEntity(CompiledQuery query, Class<E> cls) {
+    String sql = query.entitySql(cls);
+    Object[] values = query.values();
+    // the cache only tracks the entity's own table, not those joined by fetch
+    QueryCache results = query.fetchedRefs().isEmpty() ? queryCache : null;
+    long generation = 0;
+    if (results != null) {
+      Optional<List<E>> cached = results.get(cls, sql, values);
+      if (cached.isPresent()) {
+        List<E> found = cached.get();
+        if (dirtyTracker != null || UnitOfWork.active() != null) {
+          found.replaceAll(this::manage);
+        }
+        return found;
+      }
+      generation = results.generation();
+    }
     if (log.isDebugEnabled()) {
       log.debug(
           "Executing queryEntity for {} with SQL [{}] and values {}",
           cls.getSimpleName(),
           sql,
-          java.util.Arrays.toString(query.values()));
+          java.util.Arrays.toString(values));
     }
     try {
-      return jdbc.query(sql, PersistableRowMapper.of(cls), query.values());
+      List<E> found = jdbc.query(sql, entityMapper(query, cls), values);
+      if (results != null) {
+        results.put(cls, sql, values, found, generation);
+      }
+      if (entityCache != null) {
+        found.forEach(this::cache);
+      }
+      if (dirtyTracker != null || UnitOfWork.active() != null) {
+        found.replaceAll(this::manage);
+      }
+      return found;
     } catch (RuntimeException ex) {
       log.error(
           "Failed to execute queryEntity for {} with SQL [{}] and values {}",
           cls.getName(),
           sql,
-          java.util.Arrays.toString(query.values()),
+          java.util.Arrays.toString(values),
+          ex);
+      throw ex;
+    }
+  }
+
+  /** Streams the query result with a fetch size of {@link #DEFAULT_FETCH_SIZE} rows. */
+  public Stream<E> streamEntity(SqlQuery query, Class<E> cls) {
+    return streamEntity(query.compile(), cls, DEFAULT_FETCH_SIZE);
+  }
+
+  /**
+   * Like {@link #queryEntity(SqlQuery, Class)}, but maps rows lazily from a forward-only, read-only
+   * cursor fetched {@code fetchSize} rows at a time. The stream holds the statement and connection
+   * open until it is closed, so use it in a try-with-resources block. Some drivers (PostgreSQL)
+   * only honour the fetch size inside a transaction.
+   */
+  public Stream<E> streamEntity(SqlQuery query, Class<E> cls, int fetchSize) {
+    return streamEntity(query.compile(), cls, fetchSize);
+  }
+
+  /** {@link #streamEntity(SqlQuery, Class, int)} for a query compiled once up front. */
+  public Stream<E> streamEntity(CompiledQuery query, Class<E> cls, int fetchSize) {
+    String sql = query.entitySql(cls);
+    Object[] values = query.values();
+    if (log.isDebugEnabled()) {
+      log.debug(
+          "Streaming {} with SQL [{}], values {} and fetch size {}",
+          cls.getSimpleName(),
+          sql,
+          java.util.Arrays.toString(values),
+          fetchSize);
+    }
+    try {
+      Stream<E> rows =
+          jdbc.queryForStream(
+              connection -> {
+                PreparedStatement stmt =
+                    connection.prepareStatement(
+                        sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                stmt.setFetchSize(fetchSize);
+                new ArgumentPreparedStatementSetter(values).setValues(stmt);
+                return stmt;
+              },
+              entityMapper(query, cls));
+      return dirtyTracker != null || UnitOfWork.active() != null ? rows.map(this::manage) : rows;
+    } catch (RuntimeException ex) {
+      log.error(
+          "Failed to execute streamEntity for {} with SQL [{}] and values {}",
+          cls.getName(),
+          sql,
+          java.util.Arrays.toString(values),
           ex);
       throw ex;
     }
   }
 
   public List<E> query(SqlQuery query, PersistableMapper<E> mapper) {
-    SqlQueryValidator.assertPlaceholderCount(query);
+    return query(query.compile(), mapper);
+  }
+
+  /** {@link #query(SqlQuery, PersistableMapper)} for a query compiled once up front. */
+  public List<E> query(CompiledQuery query, PersistableMapper<E> mapper) {
+    String sql = query.sql();
+    Object[] values = query.values();
     if (log.isDebugEnabled()) {
       log.debug(
           "Executing custom query with SQL [{}] and values {}",
-          query.sql(),
-          java.util.Arrays.toString(query.values()));
+          sql,
+          java.util.Arrays.toString(values));
     }
-    SqlRowSet rs;
     try {
-      rs = jdbc.queryForRowSet(query.sql(), query.values());
+      return jdbc.query(sql, new CursorMapper<>(mapper), values);
     } catch (RuntimeException ex) {
       log.error(
           "Failed to execute query for SQL [{}] and values {}",
-          query.sql(),
-          java.util.Arrays.toString(query.values()),
+          sql,
+          java.util.Arrays.toString(values),
           ex);
       throw ex;
     }
-    List<E> list = new ArrayList<>();
-    while (rs.next()) {
-      list.add(mapper.mapRow(rs, rs.getRow()));
-    }
-    return list;
   }
 
   protected KeyHolder execWithKey(final String sql, final Object... args) {
@@ -206,18 +1179,6 @@ public abstract class BaseRepository<E extends Persistable> {
     return keyHolder;
   }
 
-  private String deriveEntityName(Class<?> cls) {
-    if (cls.isAnnotationPresent(Named.class)) {
-      return cls.getAnnotation(Named.class).value();
-    }
-
-    return camelToSnake(cls.getSimpleName());
-  }
-
-  private String camelToSnake(String name) {
-    return name.replaceAll("([a-z])([A-Z]+)", "$1_$2").toLowerCase();
-  }
-
   private String describeEntity(Persistable entity) {
     if (entity == null) {
       return "<null entity>";
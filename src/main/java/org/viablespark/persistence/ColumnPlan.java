@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.viablespark.persistence.dsl.EntityMetadata;
+import org.viablespark.persistence.dsl.PrimaryKey;
+import org.viablespark.persistence.dsl.Ref;
+
+/**
+ * Column label to index and property writer resolution for one result set shape, computed once and
+ * reused for every row. A plan remembers the result set it was built from so that the mapper can
+ * skip reading metadata entirely while it keeps receiving rows from the same cursor; a different
+ * cursor with identical labels reuses the resolved indices.
+ *
+ * <p>A plan with a label prefix only sees the columns labelled with it, as if the prefix were not
+ * there; joined entities are read that way, see {@code WithSql.getSelectFetchingStatement}.
+ */
+final class ColumnPlan {
+
+  static final int MISSING = -1;
+
+  private final WeakReference<ResultSet> source;
+  private final String[] labels;
+  private final Map<String, Integer> indexByLabel;
+
+  final int primaryKey;
+  final int[] named;
+  final int[] refValue;
+  final int[] refLabel;
+  final PropertyWriter[] writers;
+
+  private ColumnPlan(
+      ResultSet source,
+      String[] labels,
+      EntityMetadata metadata,
+      Map<String, PropertyWriter> properties) {
+    this.source = new WeakReference<>(source);
+    this.labels = labels;
+    this.indexByLabel = new HashMap<>(labels.length * 2);
+    this.writers = new PropertyWriter[labels.length];
+    for (int i = labels.length - 1; i >= 0; i--) {
+      indexByLabel.put(normalize(labels[i]), i + 1);
+      writers[i] = properties.get(PropertyWriter.normalize(labels[i]));
+    }
+
+    this.primaryKey = metadata.primaryKey().map(this::indexOf).orElse(MISSING);
+
+    List<EntityMetadata.Property> namedFields = metadata.namedFields();
+    this.named = new int[namedFields.size()];
+    for (int i = 0; i < named.length; i++) {
+      named[i] = indexOf(namedFields.get(i).named().value());
+    }
+
+    List<EntityMetadata.Property> refs = metadata.foreignRefs();
+    this.refValue = new int[refs.size()];
+    this.refLabel = new int[refs.size()];
+    for (int i = 0; i < refValue.length; i++) {
+      EntityMetadata.Property p = refs.get(i);
+      Ref ref = p.ref();
+      if (p.isRefValue()) {
+        refValue[i] = indexOf(ref.value());
+        refLabel[i] = indexOf(ref.label());
+      } else {
+        String column =
+            p.named() != null
+                ? p.named().value()
+                : p.type().getAnnotation(PrimaryKey.class).value();
+        refValue[i] = indexOf(column);
+        refLabel[i] = MISSING;
+      }
+    }
+  }
+
+  private ColumnPlan(ResultSet source, ColumnPlan resolved) {
+    this.source = new WeakReference<>(source);
+    this.labels = resolved.labels;
+    this.indexByLabel = resolved.indexByLabel;
+    this.primaryKey = resolved.primaryKey;
+    this.named = resolved.named;
+    this.refValue = resolved.refValue;
+    this.refLabel = resolved.refLabel;
+    this.writers = resolved.writers;
+  }
+
+  /**
+   * Returns {@code current} when it was built for {@code rs}, a rebound copy when {@code rs} has
+   * the same column labels, or a freshly resolved plan otherwise.
+   */
+  static ColumnPlan forResultSet(
+      ColumnPlan current,
+      ResultSet rs,
+      EntityMetadata metadata,
+      Map<String, PropertyWriter> properties)
+      throws SQLException {
+    return forResultSet(current, rs, metadata, properties, "");
+  }
+
+  static ColumnPlan forResultSet(
+      ColumnPlan current,
+      ResultSet rs,
+      EntityMetadata metadata,
+      Map<String, PropertyWriter> properties,
+      String prefix)
+      throws SQLException {
+    if (current != null && current.source.get() == rs) {
+      return current;
+    }
+    String[] labels = labels(rs.getMetaData(), prefix);
+    if (current != null && Arrays.equals(current.labels, labels)) {
+      return new ColumnPlan(rs, current);
+    }
+    return new ColumnPlan(rs, labels, metadata, properties);
+  }
+
+  /** 1-based index of the first column whose label matches ignoring case, or {@link #MISSING}. */
+  int indexOf(String column) {
+    Integer index = indexByLabel.get(normalize(column));
+    return index == null ? MISSING : index;
+  }
+
+  /** Column labels; with a prefix, the rest of those that start with it and blanks for others. */
+  private static String[] labels(ResultSetMetaData metaData, String prefix) throws SQLException {
+    String[] labels = new String[metaData.getColumnCount()];
+    for (int i = 0; i < labels.length; i++) {
+      String label = metaData.getColumnLabel(i + 1);
+      labels[i] = label == null || label.isEmpty() ? metaData.getColumnName(i + 1) : label;
+      if (!prefix.isEmpty()) {
+        boolean prefixed = labels[i].regionMatches(true, 0, prefix, 0, prefix.length());
+        labels[i] = prefixed ? labels[i].substring(prefix.length()) : "";
+      }
+    }
+    return labels;
+  }
+
+  private static String normalize(String label) {
+    return label == null ? "" : label.toLowerCase(Locale.ROOT);
+  }
+}
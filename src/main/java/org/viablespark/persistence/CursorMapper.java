@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.rowset.ResultSetWrappingSqlRowSet;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+/**
+ * Feeds a {@link PersistableMapper} from the live cursor of a query. Mappers that read a {@link
+ * ResultSet} directly get it as is; mappers written against {@link SqlRowSet} get a single wrapper
+ * per cursor instead of a disconnected copy of the whole result. Row numbers are 1-based, as {@link
+ * SqlRowSet#getRow()} reports them.
+ */
+final class CursorMapper<E extends Persistable> implements RowMapper<E> {
+
+  private final PersistableMapper<E> mapper;
+  private final boolean readsResultSet;
+  private ResultSet source;
+  private SqlRowSet rows;
+
+  CursorMapper(PersistableMapper<E> mapper) {
+    this.mapper = mapper;
+    this.readsResultSet = readsResultSet(mapper);
+  }
+
+  @Override
+  public E mapRow(ResultSet rs, int rowNum) throws SQLException {
+    if (readsResultSet) {
+      return mapper.mapRow(rs, rowNum + 1);
+    }
+    if (source != rs) {
+      source = rs;
+      rows = new ResultSetWrappingSqlRowSet(rs);
+    }
+    return mapper.mapRow(rows, rowNum + 1);
+  }
+
+  /**
+   * True when the mapper overrides the {@link ResultSet} variant rather than the default adapter.
+   */
+  private static boolean readsResultSet(PersistableMapper<?> mapper) {
+    try {
+      return mapper.getClass().getMethod("mapRow", ResultSet.class, int.class).getDeclaringClass()
+          != PersistableMapper.class;
+    } catch (NoSuchMethodException ex) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column snapshots of loaded entities, keyed by entity identity and held weakly so that tracking
+ * never keeps an entity alive. Used by {@link BaseRepository} to write only changed columns.
+ */
+final class DirtyTracker {
+
+  private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+  private final Map<IdentityRef, Map<String, Object>> snapshots = new ConcurrentHashMap<>();
+
+  void snapshot(Persistable entity, Map<String, Object> columns) {
+    expunge();
+    snapshots.put(new IdentityRef(entity, queue), copyOf(columns));
+  }
+
+  /** Merges freshly written column values into an existing snapshot. */
+  void refresh(Persistable entity, Map<String, Object> written) {
+    snapshots.computeIfPresent(
+        new IdentityRef(entity, null),
+        (ref, previous) -> {
+          Map<String, Object> merged = new HashMap<>(previous);
+          merged.putAll(copyOf(written));
+          return merged;
+        });
+  }
+
+  /**
+   * Columns of {@code current} whose value differs from the snapshot, or {@code null} when the
+   * entity has no snapshot.
+   */
+  List<String> changedColumns(Persistable entity, Map<String, Object> current) {
+    Map<String, Object> snapshot = snapshots.get(new IdentityRef(entity, null));
+    if (snapshot == null) {
+      return null;
+    }
+    List<String> changed = new ArrayList<>();
+    for (Map.Entry<String, Object> column : current.entrySet()) {
+      if (!snapshot.containsKey(column.getKey())
+          || !Objects.deepEquals(snapshot.get(column.getKey()), column.getValue())) {
+        changed.add(column.getKey());
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Copies arrays and dates, which can be changed in place, so that such a change still differs
+   * from the snapshot.
+   */
+  private static Map<String, Object> copyOf(Map<String, Object> columns) {
+    Map<String, Object> copy = new HashMap<>(columns.size() * 2);
+    columns.forEach((column, value) -> copy.put(column, copyOf(value)));
+    return copy;
+  }
+
+  private static Object copyOf(Object value) {
+    if (value instanceof Date date) {
+      return date.clone();
+    }
+    if (value != null && value.getClass().isArray()) {
+      int length = Array.getLength(value);
+      Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+      System.arraycopy(value, 0, copy, 0, length);
+      return copy;
+    }
+    return value;
+  }
+
+  void forget(Persistable entity) {
+    snapshots.remove(new IdentityRef(entity, null));
+  }
+
+  int size() {
+    expunge();
+    return snapshots.size();
+  }
+
+  private void expunge() {
+    Reference<?> ref;
+    while ((ref = queue.poll()) != null) {
+      snapshots.remove(ref);
+    }
+  }
+
+  private static final class IdentityRef extends WeakReference<Object> {
+    private final int hash;
+
+    IdentityRef(Object referent, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+      this.hash = System.identityHashCode(referent);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof IdentityRef ref)) {
+        return false;
+      }
+      Object referent = get();
+      return referent != null && referent == ref.get();
+    }
+  }
+}
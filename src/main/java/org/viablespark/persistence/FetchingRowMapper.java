@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.RowMapper;
+import org.viablespark.persistence.dsl.EntityMetadata;
+import org.viablespark.persistence.dsl.WithSql;
+
+/**
+ * Maps the rows of a query that joins referenced entities, see {@link
+ * org.viablespark.persistence.dsl.SqlQuery#fetch(String...)}: the entity through its own mapper and
+ * each reference through a mapper reading the columns of its join alias. A referenced row is mapped
+ * once per key and shared by later rows, so use one instance per query execution.
+ */
+final class FetchingRowMapper<E extends Persistable> implements RowMapper<E> {
+
+  private final PersistableRowMapper<E> mapper;
+  private final List<Fetched> fetched;
+
+  FetchingRowMapper(Class<E> cls, List<String> refs) {
+    this.mapper = PersistableRowMapper.of(cls);
+    this.fetched = new ArrayList<>(refs.size());
+    EntityMetadata metadata = EntityMetadata.of(cls);
+    for (String ref : refs) {
+      EntityMetadata.Property property =
+          metadata
+              .foreignRef(ref)
+              .orElseThrow(
+                  () ->
+                      new IllegalArgumentException(
+                          String.format(
+                              "%s has no @Ref property '%s' to fetch", cls.getName(), ref)));
+      fetched.add(new Fetched(property, WithSql.fetchJoinAlias(ref) + "_"));
+    }
+  }
+
+  @Override
+  public E mapRow(ResultSet rs, int rowNum) throws SQLException {
+    E entity = mapper.mapRow(rs, rowNum);
+    for (Fetched ref : fetched) {
+      ref.assign(entity, rs, rowNum);
+    }
+    return entity;
+  }
+
+  private static final class Fetched {
+    private final EntityMetadata.Property property;
+    private final PersistableRowMapper<? extends Persistable> mapper;
+    private final String keyLabel;
+    private final Map<Long, Persistable> loaded = new HashMap<>();
+    private int keyIndex;
+
+    @SuppressWarnings("unchecked")
+    Fetched(EntityMetadata.Property property, String prefix) {
+      this.property = property;
+      Class<? extends Persistable> type = (Class<? extends Persistable>) property.type();
+      this.mapper = PersistableRowMapper.of(type, prefix);
+      this.keyLabel =
+          prefix
+              + EntityMetadata.of(type)
+                  .primaryKey()
+                  .orElseThrow(
+                      () -> new IllegalArgumentException(type.getName() + " has no @PrimaryKey"));
+    }
+
+    /** Sets the referenced entity of the row, unless the join found none. */
+    void assign(Persistable entity, ResultSet rs, int rowNum) throws SQLException {
+      if (keyIndex == 0) {
+        keyIndex = rs.findColumn(keyLabel);
+      }
+      long id = rs.getLong(keyIndex);
+      if (rs.wasNull()) {
+        return;
+      }
+      Persistable ref = loaded.get(id);
+      if (ref == null) {
+        ref = mapper.mapRow(rs, rowNum);
+        UnitOfWork uow = UnitOfWork.active();
+        if (uow != null) {
+          ref = uow.register(ref);
+        }
+        loaded.put(id, ref);
+      }
+      try {
+        property.set(entity, ref);
+      } catch (ReflectiveOperationException ex) {
+        throw new SQLException(
+            String.format(
+                "Failed to set fetched %s on %s",
+                property.name(), entity.getClass().getSimpleName()),
+            ex);
+      }
+    }
+  }
+}
@@ -13,31 +13,58 @@
 
 package org.viablespark.persistence;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 
+/**
+ * Primary key and, for composite keys, further key columns of an entity, in column order.
+ *
+ * <p>Single-column keys, by far the most common, hold their column name and an unboxed value in one
+ * {@link Pair} with a precomputed hash; a map is only built once a second column is added. The
+ * pairs returned by {@link #getKeys()} and {@link #primaryKey()} write through to the key.
+ * Serialized keys hold the column names and values only.
+ */
 public class Key implements Serializable {
 
+  @Serial private static final long serialVersionUID = 1L;
+
   public static final Key None = new Key();
-  private final Map<String, Pair<String, Long>> keys = new LinkedHashMap<>();
+
+  private transient Column single;
+  private transient Map<String, Pair<String, Long>> keys;
 
   public Key() {}
 
   public Key(Pair<String, Long> primaryKey) {
-    keys.put(primaryKey.getKey(), primaryKey);
+    put(primaryKey);
   }
 
   public static Key of(String key, Long value) {
-    return new Key(new Pair<>(key, value));
+    Key k = new Key();
+    k.single = new Column(key, value);
+    return k;
+  }
+
+  public static Key of(String key, long value) {
+    Key k = new Key();
+    k.single = new Column(key, value);
+    return k;
   }
 
   public Key(Map<String, ?> map) {
     for (Entry<String, ?> e : map.entrySet()) {
-      keys.put(e.getKey(), Pair.of(e.getKey(), ((Number) e.getValue()).longValue()));
+      add(e.getKey(), ((Number) e.getValue()).longValue());
     }
   }
 
@@ -53,23 +80,36 @@ public class Key implements Serializable {
   }
 
   public Key add(String name, Long key) {
-    keys.put(name, Pair.of(name, key));
+    if (keys == null && (single == null || Objects.equals(single.getKey(), name))) {
+      single = new Column(name, key);
+    } else {
+      composite().put(name, Pair.of(name, key));
+    }
     return this;
   }
 
   public int count() {
-    return keys.size();
+    if (keys != null) {
+      return keys.size();
+    }
+    return single == null ? 0 : 1;
   }
 
   public Collection<Pair<String, Long>> getKeys() {
-    return keys.values();
+    if (keys != null) {
+      return keys.values();
+    }
+    return single == null ? List.of() : List.of(single);
   }
 
   public void setKeys(Collection<Pair<String, Long>> _keys) {
-    _keys.forEach(pair -> keys.put(pair.getKey(), pair));
+    _keys.forEach(this::put);
   }
 
   public Pair<String, Long> getAt(int index) {
+    if (keys == null) {
+      return index == 0 ? single : null;
+    }
     int counter = 0;
     for (Entry<String, Pair<String, Long>> entry : keys.entrySet()) {
       if (counter == index) {
@@ -81,7 +121,7 @@ public class Key implements Serializable {
   }
 
   public Long getKey(String name) {
-    Pair<String, Long> found = keys.get(name);
+    Pair<String, Long> found = find(name);
     if (found == null) {
       throw new RuntimeException("Key " + name + " not found. Other keys?" + this);
     }
@@ -89,37 +129,41 @@ public class Key implements Serializable {
   }
 
   public Optional<Pair<String, Long>> contains(String strKey) {
-    if (!keys.containsKey(strKey)) {
-      return Optional.empty();
-    }
-    return Optional.of(keys.get(strKey));
+    return Optional.ofNullable(find(strKey));
   }
 
   @Override
   public boolean equals(Object other) {
-
+    if (this == other) {
+      return true;
+    }
     if (!(other instanceof Key)) {
       return false;
     }
-
-    if (((Key) other).count() != count()) {
+    Key that = (Key) other;
+    if (single != null && that.single != null) {
+      return single.sameAs(that.single);
+    }
+    if (that.count() != count()) {
       return false;
     }
-
-    for (int i = 0; i < count(); i++) {
-      if (!getAt(i).equals(((Key) other).getAt(i))) {
+    Iterator<Pair<String, Long>> theirs = that.getKeys().iterator();
+    for (Pair<String, Long> pair : getKeys()) {
+      if (!pair.equals(theirs.next())) {
         return false;
       }
     }
-
     return true;
   }
 
   @Override
   public int hashCode() {
+    if (keys == null) {
+      return single == null ? 0 : single.hash;
+    }
     int hash = 0;
-    for (int i = 0; i < count(); i++) {
-      hash += getAt(i).hashCode();
+    for (Pair<String, Long> pair : keys.values()) {
+      hash += hash(pair.getKey(), pair.getValue());
     }
     return hash;
   }
@@ -131,9 +175,117 @@ public class Key implements Serializable {
   @Override
   public String toString() {
     StringBuilder str = new StringBuilder("Key(s) ");
-    for (Pair<String, Long> key : keys.values()) {
+    for (Pair<String, Long> key : getKeys()) {
       str.append(key.getKey()).append("=").append(key.getValue()).append(" ");
     }
     return str.toString();
   }
+
+  @Serial
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(count());
+    for (Pair<String, Long> key : getKeys()) {
+      out.writeObject(key.getKey());
+      out.writeObject(key.getValue());
+    }
+  }
+
+  @Serial
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      put(Pair.of((String) in.readObject(), (Long) in.readObject()));
+    }
+  }
+
+  private void put(Pair<String, Long> pair) {
+    if (keys == null && (single == null || Objects.equals(single.getKey(), pair.getKey()))) {
+      single = new Column(pair.getKey(), pair.getValue());
+    } else {
+      composite().put(pair.getKey(), pair);
+    }
+  }
+
+  private Pair<String, Long> find(String name) {
+    if (keys != null) {
+      return keys.get(name);
+    }
+    return single != null && Objects.equals(single.getKey(), name) ? single : null;
+  }
+
+  private Map<String, Pair<String, Long>> composite() {
+    if (keys == null) {
+      keys = new LinkedHashMap<>();
+      if (single != null) {
+        keys.put(single.getKey(), single);
+        single = null;
+      }
+    }
+    return keys;
+  }
+
+  /** Contribution of one column to {@link #hashCode()}, the same for both representations. */
+  private static int hash(String name, Long value) {
+    return 31 * Objects.hashCode(name) + Objects.hashCode(value);
+  }
+
+  /** Key column with an unboxed value and its hash contribution kept up to date. */
+  private static final class Column extends Pair<String, Long> {
+    private String name;
+    private long value;
+    private boolean absent;
+    private int hash;
+
+    Column(String name, Long value) {
+      this.name = name;
+      setValue(value);
+    }
+
+    Column(String name, long value) {
+      this.name = name;
+      this.value = value;
+      rehash();
+    }
+
+    @Override
+    public String getKey() {
+      return name;
+    }
+
+    @Override
+    public void setKey(String key) {
+      this.name = key;
+      rehash();
+    }
+
+    @Override
+    public Long getValue() {
+      return absent ? null : value;
+    }
+
+    @Override
+    public void setValue(Long value) {
+      this.absent = value == null;
+      this.value = absent ? 0 : value;
+      rehash();
+    }
+
+    boolean sameAs(Column other) {
+      return hash == other.hash
+          && value == other.value
+          && absent == other.absent
+          && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Column other ? sameAs(other) : super.equals(o);
+    }
+
+    private void rehash() {
+      hash = absent ? Key.hash(name, null) : 31 * Objects.hashCode(name) + Long.hashCode(value);
+    }
+  }
 }
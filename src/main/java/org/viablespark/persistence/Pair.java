@@ -49,21 +49,20 @@ public class Pair<T, Y> {
 
   @Override
   public String toString() {
-    return "Pair{" + "key=" + key + ", value=" + value + '}';
+    return "Pair{" + "key=" + getKey() + ", value=" + getValue() + '}';
   }
 
   @Override
   public int hashCode() {
     int hash = 5;
-    hash = 37 * hash + Objects.hashCode(this.key);
+    hash = 37 * hash + Objects.hashCode(getKey());
     return hash;
   }
 
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
-    if (o == null || getClass() != o.getClass()) return false;
-    Pair<?, ?> pair = (Pair<?, ?>) o;
-    return Objects.equals(key, pair.key) && Objects.equals(value, pair.value);
+    if (!(o instanceof Pair<?, ?> pair)) return false;
+    return Objects.equals(getKey(), pair.getKey()) && Objects.equals(getValue(), pair.getValue());
   }
 }
@@ -21,60 +21,74 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.support.rowset.ResultSetWrappingSqlRowSet;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.jdbc.support.rowset.SqlRowSetMetaData;
-import org.viablespark.persistence.dsl.Named;
+import org.viablespark.persistence.dsl.EntityMetadata;
 import org.viablespark.persistence.dsl.PrimaryKey;
-import org.viablespark.persistence.dsl.Ref;
-import org.viablespark.persistence.dsl.WithSql;
 
 public class PersistableRowMapper<E extends Persistable> implements PersistableMapper<E> {
-  private final BeanPropertyRowMapper<E> propertyMapper;
+  private final Map<String, PropertyWriter> properties;
   private final Class<E> mappedType;
+  private final EntityMetadata metadata;
+  private final String prefix;
+  private volatile ColumnPlan plan;
   private static final Logger log = LoggerFactory.getLogger(PersistableRowMapper.class);
   private static final Map<SqlRowSet, ResultSet> proxyCache =
       Collections.synchronizedMap(new WeakHashMap<>());
   private static final Map<
           Class<? extends Persistable>, PersistableRowMapper<? extends Persistable>>
       cachedMappers = new ConcurrentHashMap<>(100, 0.75f, 16);
+  private static final Map<Prefixed, PersistableRowMapper<? extends Persistable>> prefixedMappers =
+      new ConcurrentHashMap<>();
 
   /**
    * To take advantage of a cached instance of RowMapper use the static method of() instead to
    * create an instance.
    */
-  private PersistableRowMapper(Class<E> cls) {
+  private PersistableRowMapper(Class<E> cls, String prefix) {
     this.mappedType = cls;
-    this.propertyMapper = new BeanPropertyRowMapper<>(cls);
+    this.metadata = EntityMetadata.of(cls);
+    this.properties = PropertyWriter.forType(cls);
+    this.prefix = prefix;
   }
 
   @SuppressWarnings("unchecked")
   public static <E extends Persistable> PersistableRowMapper<E> of(Class<E> cls) {
     return (PersistableRowMapper<E>)
         cachedMappers.computeIfAbsent(
-            cls, (target) -> new PersistableRowMapper<>((Class<E>) target));
+            cls, (target) -> new PersistableRowMapper<>((Class<E>) target, ""));
+  }
+
+  /** Mapper reading only the columns labelled {@code prefix}, with the prefix left out. */
+  @SuppressWarnings("unchecked")
+  static <E extends Persistable> PersistableRowMapper<E> of(Class<E> cls, String prefix) {
+    if (prefix.isEmpty()) {
+      return of(cls);
+    }
+    return (PersistableRowMapper<E>)
+        prefixedMappers.computeIfAbsent(
+            new Prefixed(cls, prefix), key -> new PersistableRowMapper<>(cls, prefix));
   }
 
   @Override
   public E mapRow(ResultSet rs, int rowNum) throws SQLException {
     try {
-      var bean = propertyMapper.mapRow(rs, rowNum);
-      assignPrimaryKey(Objects.requireNonNull(bean), rs);
-      assignForeignRefs(bean, rs);
-      assignNamedFields(bean, rs);
+      var columns = ColumnPlan.forResultSet(plan, rs, metadata, properties, prefix);
+      plan = columns;
+      var bean = newInstance();
+      assignProperties(bean, rs, columns);
+      assignPrimaryKey(bean, rs, columns);
+      assignForeignRefs(bean, rs, columns);
+      assignNamedFields(bean, rs, columns);
       return bean;
     } catch (Exception ex) {
       String message =
@@ -90,6 +104,9 @@ public class PersistableRowMapper<E extends Persistable> implements PersistableM
   @SuppressWarnings("exports")
   public E mapRow(SqlRowSet rs, int rowNum) {
     try {
+      if (rs instanceof ResultSetWrappingSqlRowSet wrapping) {
+        return mapRow(wrapping.getResultSet(), rowNum);
+      }
       return mapRow(proxy(rs), rowNum);
     } catch (SQLException ex) {
       String message =
@@ -100,66 +117,57 @@ public class PersistableRowMapper<E extends Persistable> implements PersistableM
     }
   }
 
-  private void assignPrimaryKey(Persistable e, ResultSet rs) throws Exception {
-    Optional<String> found =
-        Stream.of(e.getClass(), e.getClass().getSuperclass())
-            .filter(tp -> tp.isAnnotationPresent(PrimaryKey.class))
-            .map(tp -> tp.getAnnotation(PrimaryKey.class).value())
-            .findFirst();
+  @SuppressWarnings("unchecked")
+  private E newInstance() throws ReflectiveOperationException {
+    return (E) metadata.newInstance();
+  }
+
+  private static void assignProperties(Persistable bean, ResultSet rs, ColumnPlan columns)
+      throws SQLException {
+    PropertyWriter[] writers = columns.writers;
+    for (int i = 0; i < writers.length; i++) {
+      if (writers[i] != null) {
+        writers[i].write(bean, rs, i + 1);
+      }
+    }
+  }
+
+  private void assignPrimaryKey(Persistable e, ResultSet rs, ColumnPlan columns) throws Exception {
+    Optional<String> found = metadata.primaryKey();
 
     if (found.isPresent()) {
       var columnName = found.get();
       int columnIdx =
           requireColumnIndex(
-              rs, columnName, String.format("Primary key mapping for %s", mappedType.getName()));
+              columns.primaryKey,
+              columnName,
+              String.format("Primary key mapping for %s", mappedType.getName()));
       long pkValue = rs.getLong(columnIdx);
       e.setRefs(Key.of(columnName, pkValue));
     }
   }
 
-  private void assignNamedFields(Persistable entity, ResultSet rs) throws Exception {
-    List<Method> methods =
-        Arrays.stream(entity.getClass().getDeclaredMethods())
-            .filter(
-                m ->
-                    m.getName().startsWith("get")
-                        && WithSql.getAnnotation(m, entity.getClass(), Named.class).isPresent()
-                        && WithSql.getAnnotation(m, entity.getClass(), Ref.class).isEmpty()
-                        && !m.getReturnType().equals(RefValue.class))
-            .collect(Collectors.toList());
-
-    for (Method m : methods) {
-      var optionMethod = WithSql.getAnnotation(m, entity.getClass(), Named.class);
-
-      var customField = optionMethod.orElseThrow().value();
-      int index = columnIndex(rs, customField);
+  private void assignNamedFields(Persistable entity, ResultSet rs, ColumnPlan columns)
+      throws Exception {
+    List<EntityMetadata.Property> namedFields = metadata.namedFields();
+    for (int i = 0; i < namedFields.size(); i++) {
+      var p = namedFields.get(i);
+      var customField = p.named().value();
+      int index = columns.named[i];
       if (index > 0) {
         var setterValue = rs.getObject(index);
-        invokeSetter(entity, m, interpolateValue(setterValue, m.getReturnType()));
+        invokeSetter(entity, p, interpolateValue(setterValue, p.type()));
       } else {
         log.debug(
             "Result set for {} is missing column '{}' required by @Named on {}.{}",
             mappedType.getSimpleName(),
             customField,
             entity.getClass().getSimpleName(),
-            m.getName());
+            p.name());
       }
     }
   }
 
-  private int columnIndex(ResultSet rs, String columnName) throws SQLException {
-    ResultSetMetaData metaData = rs.getMetaData();
-    int columnCount = metaData.getColumnCount();
-    int index = -1;
-    for (int i = 1; i <= columnCount; i++) {
-      if (metaData.getColumnLabel(i).equalsIgnoreCase(columnName)) {
-        index = i;
-        break;
-      }
-    }
-    return index;
-  }
-
   protected static boolean isIntegerType(Class<?> parameterType) {
     return parameterType == int.class || parameterType == Integer.class;
   }
@@ -188,57 +196,37 @@ public class PersistableRowMapper<E extends Persistable> implements PersistableM
     return value;
   }
 
-  private void assignForeignRefs(Persistable entity, ResultSet rs) throws Exception {
-    List<Method> methods =
-        Arrays.stream(entity.getClass().getDeclaredMethods())
-            .filter(m -> m.getName().startsWith("get"))
-            .filter(m -> WithSql.getAnnotation(m, entity.getClass(), Ref.class).isPresent())
-            .filter(
-                m ->
-                    m.getReturnType().isAnnotationPresent(PrimaryKey.class)
-                        || m.getReturnType().equals(RefValue.class))
-            .collect(Collectors.toList());
-
-    // Cache reflection results
-    Map<Method, Class<?>> foreignTypes = new HashMap<>();
-    Map<Method, Optional<Named>> namedOptions = new HashMap<>();
-    Map<Method, Ref> refs = new HashMap<>();
-
-    for (Method m : methods) {
-      foreignTypes.put(m, m.getReturnType());
-      namedOptions.put(m, WithSql.getAnnotation(m, entity.getClass(), Named.class));
-      refs.put(m, WithSql.getAnnotation(m, entity.getClass(), Ref.class).orElseThrow());
-    }
-
-    for (Method m : methods) {
-      Class<?> foreignType = foreignTypes.get(m);
-      var namedOption = namedOptions.get(m);
-      var ref = refs.get(m);
+  private void assignForeignRefs(Persistable entity, ResultSet rs, ColumnPlan columns)
+      throws Exception {
+    List<EntityMetadata.Property> foreignRefs = metadata.foreignRefs();
+    for (int i = 0; i < foreignRefs.size(); i++) {
+      var p = foreignRefs.get(i);
+      Class<?> foreignType = p.type();
+      var ref = p.ref();
 
-      if (foreignType.equals(RefValue.class)) {
+      if (p.isRefValue()) {
         if (ref.value().isBlank() || ref.label().isBlank()) {
           throw new IllegalArgumentException(
               String.format(
                   "@Ref on %s.%s requires both value and label when used with RefValue",
-                  entity.getClass().getSimpleName(), m.getName()));
+                  entity.getClass().getSimpleName(), p.name()));
         }
 
         int valueIdx =
             requireColumnIndex(
-                rs,
+                columns.refValue[i],
                 ref.value(),
                 String.format(
-                    "@Ref mapping for %s.%s", entity.getClass().getSimpleName(), m.getName()));
+                    "@Ref mapping for %s.%s", entity.getClass().getSimpleName(), p.name()));
         int labelIdx =
             requireColumnIndex(
-                rs,
+                columns.refLabel[i],
                 ref.label(),
                 String.format(
-                    "@Ref label mapping for %s.%s",
-                    entity.getClass().getSimpleName(), m.getName()));
+                    "@Ref label mapping for %s.%s", entity.getClass().getSimpleName(), p.name()));
         String labelValue = rs.getString(labelIdx);
         var fkValue = new RefValue(labelValue, Pair.of(ref.value(), rs.getLong(valueIdx)));
-        invokeSetter(entity, m, fkValue);
+        invokeSetter(entity, p, fkValue);
 
         // In case of RefValue, continue over to the next method.
         continue;
@@ -246,48 +234,62 @@ public class PersistableRowMapper<E extends Persistable> implements PersistableM
 
       var pkName = foreignType.getAnnotation(PrimaryKey.class).value();
       String columnName = pkName;
-      if (namedOption.isPresent()) {
-        columnName = namedOption.get().value();
+      if (p.named() != null) {
+        columnName = p.named().value();
       }
       int columnIdx =
           requireColumnIndex(
-              rs,
+              columns.refValue[i],
               columnName,
-              String.format(
-                  "@Ref mapping for %s.%s", entity.getClass().getSimpleName(), m.getName()));
-      var pkValue = rs.getLong(columnIdx);
-      var fkInstance = foreignType.getDeclaredConstructor().newInstance();
-      ((Persistable) fkInstance).setRefs(Key.of(pkName, pkValue));
-      invokeSetter(entity, m, fkInstance);
+              String.format("@Ref mapping for %s.%s", entity.getClass().getSimpleName(), p.name()));
+      var fkKey = Key.of(pkName, rs.getLong(columnIdx));
+      UnitOfWork uow = UnitOfWork.active();
+      Object fkInstance =
+          uow == null
+              ? newReference(foreignType, fkKey)
+              : uow.reference(foreignType, fkKey, () -> newReference(foreignType, fkKey));
+      invokeSetter(entity, p, fkInstance);
     }
   }
 
-  private int requireColumnIndex(ResultSet rs, String columnName, String context)
+  private static Persistable newReference(Class<?> type, Key key) {
+    try {
+      var instance = (Persistable) EntityMetadata.of(type).newInstance();
+      instance.setRefs(key);
+      return instance;
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Cannot instantiate reference " + type.getName(), ex);
+    }
+  }
+
+  private static int requireColumnIndex(int columnIdx, String columnName, String context)
       throws SQLException {
-    int columnIdx = columnIndex(rs, columnName);
-    if (columnIdx < 0) {
+    if (columnIdx == ColumnPlan.MISSING) {
       throw new SQLException(
           String.format("%s: column '%s' not present in result set", context, columnName));
     }
     return columnIdx;
   }
 
-  private void invokeSetter(Persistable entity, Method accessor, Object value) throws SQLException {
-    String setterName = accessor.getName().replace("get", "set");
+  private void invokeSetter(Persistable entity, EntityMetadata.Property property, Object value)
+      throws SQLException {
     try {
-      Method setter = entity.getClass().getDeclaredMethod(setterName, accessor.getReturnType());
-      setter.invoke(entity, value);
+      property.set(entity, value);
     } catch (NoSuchMethodException ex) {
       throw new SQLException(
           String.format(
               "Setter '%s' for %s.%s not found",
-              setterName, entity.getClass().getSimpleName(), accessor.getName()),
+              property.setterName(), entity.getClass().getSimpleName(), property.name()),
           ex);
-    } catch (IllegalAccessException | InvocationTargetException ex) {
+    } catch (ReflectiveOperationException ex) {
+      Throwable cause = ex instanceof InvocationTargetException ? ex.getCause() : ex;
       throw new SQLException(
           String.format(
               "Failed to invoke setter '%s' for %s.%s: %s",
-              setterName, entity.getClass().getSimpleName(), accessor.getName(), ex.getMessage()),
+              property.setterName(),
+              entity.getClass().getSimpleName(),
+              property.name(),
+              cause.getMessage()),
           ex);
     }
   }
@@ -303,13 +305,24 @@ public class PersistableRowMapper<E extends Persistable> implements PersistableM
                     new SqlRowSetWrapper(key)));
   }
 
-  private record SqlRowSetWrapper(SqlRowSet rows) implements InvocationHandler {
+  private record Prefixed(Class<?> type, String prefix) {}
+
+  private static final class SqlRowSetWrapper implements InvocationHandler {
+    private final SqlRowSet rows;
+    private ResultSetMetaData metaData;
+
+    SqlRowSetWrapper(SqlRowSet rows) {
+      this.rows = rows;
+    }
 
     @Override
     @SuppressWarnings("UseSpecificCatch")
     public Object invoke(Object target, Method method, Object[] args) throws Throwable {
       if (method.getName().equals("getMetaData")) {
-        return proxyMetaData(rows.getMetaData());
+        if (metaData == null) {
+          metaData = proxyMetaData(rows.getMetaData());
+        }
+        return metaData;
       }
 
       if ("getObject".equals(method.getName())
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Writes one result set column into one bean property through a typed column read and a setter
+ * handle. Property matching follows {@link org.springframework.jdbc.core.BeanPropertyRowMapper}: a
+ * column matches a writable property by its lower-cased name or its underscored name, with spaces
+ * in the column label ignored.
+ */
+final class PropertyWriter {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType SETTER =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private static final ClassValue<Map<String, PropertyWriter>> CACHE =
+      new ClassValue<>() {
+        @Override
+        protected Map<String, PropertyWriter> computeValue(Class<?> type) {
+          return compile(type);
+        }
+      };
+
+  private final String name;
+  private final Class<?> type;
+  private final Reader reader;
+  private final MethodHandle setter;
+
+  private PropertyWriter(String name, Class<?> type, MethodHandle setter) {
+    this.name = name;
+    this.type = type;
+    this.reader = readerFor(type);
+    this.setter = setter;
+  }
+
+  /** Writable properties of {@code type} keyed by every column name that maps onto them. */
+  static Map<String, PropertyWriter> forType(Class<?> type) {
+    return CACHE.get(type);
+  }
+
+  /** Normalizes a column label the same way property keys are stored. */
+  static String normalize(String column) {
+    return column == null ? "" : column.replace(" ", "").toLowerCase(Locale.ROOT);
+  }
+
+  String name() {
+    return name;
+  }
+
+  void write(Object bean, ResultSet rs, int index) throws SQLException {
+    Object value = reader.read(rs, index);
+    if (value == null && type.isPrimitive()) {
+      throw new SQLException(
+          String.format(
+              "Column %d is null and cannot be assigned to primitive property '%s' of %s",
+              index, name, bean.getClass().getName()));
+    }
+    try {
+      setter.invokeExact(bean, value);
+    } catch (Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new SQLException(
+          String.format(
+              "Failed to set property '%s' of %s: %s",
+              name, bean.getClass().getName(), ex.getMessage()),
+          ex);
+    }
+  }
+
+  private static Map<String, PropertyWriter> compile(Class<?> type) {
+    Map<String, Method> setters = new HashMap<>();
+    for (Method method : type.getMethods()) {
+      if (isSetter(method)) {
+        setters.merge(
+            propertyName(method), method, (found, other) -> preferred(type, found, other));
+      }
+    }
+    Map<String, PropertyWriter> writers = new HashMap<>();
+    setters.forEach(
+        (name, method) -> {
+          var writer = new PropertyWriter(name, method.getParameterTypes()[0], unreflect(method));
+          writers.put(name.toLowerCase(Locale.ROOT), writer);
+          writers.putIfAbsent(underscoreName(name), writer);
+        });
+    return Collections.unmodifiableMap(writers);
+  }
+
+  private static boolean isSetter(Method method) {
+    return method.getName().length() > 3
+        && method.getName().startsWith("set")
+        && method.getParameterCount() == 1
+        && !Modifier.isStatic(method.getModifiers())
+        && !method.isBridge();
+  }
+
+  /** Property name as {@link java.beans.Introspector#decapitalize(String)} derives it. */
+  private static String propertyName(Method setter) {
+    String name = setter.getName().substring(3);
+    if (name.length() > 1 && Character.isUpperCase(name.charAt(1))) {
+      return name;
+    }
+    return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+  }
+
+  /** Of two overloaded setters, prefers the one accepting the matching getter's type. */
+  private static Method preferred(Class<?> type, Method found, Method other) {
+    try {
+      Class<?> getterType = type.getMethod("get" + found.getName().substring(3)).getReturnType();
+      return other.getParameterTypes()[0] == getterType ? other : found;
+    } catch (NoSuchMethodException ex) {
+      return found;
+    }
+  }
+
+  private static MethodHandle unreflect(Method method) {
+    try {
+      method.trySetAccessible();
+      return LOOKUP.unreflect(method).asType(SETTER);
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException(
+          String.format("Setter %s is not accessible", method.toGenericString()), ex);
+    }
+  }
+
+  private static String underscoreName(String name) {
+    StringBuilder result = new StringBuilder(name.length() + 4);
+    result.append(Character.toLowerCase(name.charAt(0)));
+    for (int i = 1; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (Character.isUpperCase(c)) {
+        result.append('_').append(Character.toLowerCase(c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  @FunctionalInterface
+  private interface Reader {
+    Object read(ResultSet rs, int index) throws SQLException;
+  }
+
+  private static Reader readerFor(Class<?> type) {
+    if (type == String.class) {
+      return ResultSet::getString;
+    }
+    if (type == long.class || type == Long.class) {
+      return (rs, i) -> {
+        long value = rs.getLong(i);
+        return value == 0 && rs.wasNull() ? null : value;
+      };
+    }
+    if (type == int.class || type == Integer.class) {
+      return (rs, i) -> {
+        int value = rs.getInt(i);
+        return value == 0 && rs.wasNull() ? null : value;
+      };
+    }
+    if (type == double.class || type == Double.class) {
+      return (rs, i) -> {
+        double value = rs.getDouble(i);
+        return value == 0 && rs.wasNull() ? null : value;
+      };
+    }
+    if (type == boolean.class || type == Boolean.class) {
+      return (rs, i) -> {
+        boolean value = rs.getBoolean(i);
+        return !value && rs.wasNull() ? null : value;
+      };
+    }
+    if (type == BigDecimal.class) {
+      return ResultSet::getBigDecimal;
+    }
+    return (rs, i) -> convert(JdbcUtils.getResultSetValue(rs, i, type), type);
+  }
+
+  private static Object convert(Object value, Class<?> type) {
+    if (value == null || ClassUtils.isAssignableValue(type, value)) {
+      return value;
+    }
+    ConversionService conversion = DefaultConversionService.getSharedInstance();
+    return conversion.convert(value, type);
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Identity map for the current thread, typically spanning one request. While a unit of work is
+ * open, every repository keeps a single instance per entity class and key: repeated {@link
+ * BaseRepository#get(Key, Class)} calls are served from memory, query results reuse instances
+ * already loaded, and {@code @Ref} objects created while mapping rows are shared instead of
+ * allocated per row.
+ *
+ * <pre>{@code
+ * try (UnitOfWork uow = UnitOfWork.begin()) {
+ *   var first = repository.get(key, Note.class);
+ *   var second = repository.get(key, Note.class); // same instance, no query
+ * }
+ * }</pre>
+ *
+ * Units of work nest; closing one restores the enclosing one. Instances are not refreshed from the
+ * database while the unit of work is open.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+  private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+  private final UnitOfWork outer;
+  private final Map<Identity, Persistable> loaded = new HashMap<>();
+  private final Map<Identity, Persistable> references = new HashMap<>();
+  private boolean closed;
+
+  private UnitOfWork(UnitOfWork outer) {
+    this.outer = outer;
+  }
+
+  /** Opens a unit of work on the current thread. Close it in the same thread. */
+  public static UnitOfWork begin() {
+    UnitOfWork uow = new UnitOfWork(CURRENT.get());
+    CURRENT.set(uow);
+    return uow;
+  }
+
+  public static Optional<UnitOfWork> current() {
+    return Optional.ofNullable(CURRENT.get());
+  }
+
+  /** The open unit of work, or {@code null}. */
+  static UnitOfWork active() {
+    return CURRENT.get();
+  }
+
+  /** The instance of {@code type} loaded under {@code key}, if any. */
+  public <T extends Persistable> Optional<T> find(Class<T> type, Key key) {
+    Identity id = Identity.of(type, key);
+    return id == null ? Optional.empty() : Optional.ofNullable(type.cast(loaded.get(id)));
+  }
+
+  /**
+   * Makes {@code entity} the instance for its class and key unless another one is registered
+   * already, in which case that one is returned. Entities without a key are returned as is.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Persistable> T register(T entity) {
+    Identity id = Identity.of(entity.getClass(), entity.getRefs());
+    if (id == null) {
+      return entity;
+    }
+    Persistable existing = loaded.putIfAbsent(id, entity);
+    return existing != null ? (T) existing : entity;
+  }
+
+  /** Makes {@code entity}, just written, the instance for its class and key. */
+  void put(Persistable entity) {
+    Identity id = Identity.of(entity.getClass(), entity.getRefs());
+    if (id != null) {
+      loaded.put(id, entity);
+    }
+  }
+
+  /**
+   * Instance to use for a reference to {@code type} with {@code key}: the loaded entity when there
+   * is one, otherwise a key-only instance from {@code factory} shared by all references to it.
+   */
+  Persistable reference(Class<?> type, Key key, Supplier<? extends Persistable> factory) {
+    Identity id = Identity.of(type, key);
+    Persistable found = loaded.get(id);
+    return found != null ? found : references.computeIfAbsent(id, k -> factory.get());
+  }
+
+  public void evict(Persistable entity) {
+    evict(entity.getClass(), entity.getRefs());
+  }
+
+  public void evict(Class<?> type, Key key) {
+    Identity id = Identity.of(type, key);
+    if (id != null) {
+      loaded.remove(id);
+      references.remove(id);
+    }
+  }
+
+  public void clear() {
+    loaded.clear();
+    references.clear();
+  }
+
+  /** Number of loaded entities held. */
+  public int size() {
+    return loaded.size();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    if (CURRENT.get() != this) {
+      throw new IllegalStateException(
+          "Unit of work closed out of order or from another thread than it was begun in");
+    }
+    closed = true;
+    clear();
+    if (outer == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(outer);
+    }
+  }
+
+  /** Class plus a copy of the key columns and values, so later changes to a Key do not matter. */
+  private record Identity(Class<?> type, List<Object> key) {
+    static Identity of(Class<?> type, Key key) {
+      if (key == null || key.count() == 0) {
+        return null;
+      }
+      List<Object> parts = new ArrayList<>(key.count() * 2);
+      for (Pair<String, Long> pair : key.getKeys()) {
+        parts.add(pair.getKey());
+        parts.add(pair.getValue());
+      }
+      return new Identity(type, parts);
+    }
+  }
+}
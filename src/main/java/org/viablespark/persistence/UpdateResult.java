@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Outcome of a batched update. {@code rowCounts} holds the driver reported count for each entity in
+ * the order they were passed, which may be {@link Statement#SUCCESS_NO_INFO} when the driver does
+ * not report counts; {@code unmatched} lists the entities whose update matched no row.
+ */
+public record UpdateResult<E extends Persistable>(List<Integer> rowCounts, List<E> unmatched) {
+
+  public UpdateResult {
+    rowCounts = List.copyOf(rowCounts);
+    unmatched = List.copyOf(unmatched);
+  }
+
+  /** Sum of the known row counts. */
+  public int totalRows() {
+    return rowCounts.stream().mapToInt(count -> Math.max(count, 0)).sum();
+  }
+
+  public boolean allMatched() {
+    return unmatched.isEmpty();
+  }
+}
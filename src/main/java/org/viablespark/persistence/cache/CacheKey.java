@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.viablespark.persistence.Key;
+import org.viablespark.persistence.Pair;
+
+/** Class plus a copy of the key columns and values, so later changes to a Key do not matter. */
+record CacheKey(Class<?> type, List<Object> key) {
+
+  /** The cache key for {@code type} and {@code key}, or {@code null} when there is no key. */
+  static CacheKey of(Class<?> type, Key key) {
+    if (key == null || key.count() == 0) {
+      return null;
+    }
+    List<Object> parts = new ArrayList<>(key.count() * 2);
+    for (Pair<String, Long> pair : key.getKeys()) {
+      parts.add(pair.getKey());
+      parts.add(pair.getValue());
+    }
+    return new CacheKey(type, parts);
+  }
+}
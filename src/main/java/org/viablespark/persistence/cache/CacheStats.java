@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.cache;
+
+/** Point-in-time counters of a cache. Evictions count entries dropped to stay within size. */
+public record CacheStats(long hitCount, long missCount, long evictionCount, long size) {
+
+  public long requestCount() {
+    return hitCount + missCount;
+  }
+
+  /** Ratio of hits to requests, {@code 1.0} when there were no requests. */
+  public double hitRate() {
+    long requests = requestCount();
+    return requests == 0 ? 1.0 : (double) hitCount / requests;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.cache;
+
+import java.util.Optional;
+import org.viablespark.persistence.Key;
+import org.viablespark.persistence.Persistable;
+
+/**
+ * Second-level cache of entities by class and key, shared across repositories and threads.
+ * Implementations must hand out instances that callers may modify without affecting the cache.
+ *
+ * @see SegmentedLruCache
+ */
+public interface EntityCache {
+
+  <T extends Persistable> Optional<T> get(Class<T> type, Key key);
+
+  /** Caches {@code entity} under its class and key; entities without a key are ignored. */
+  void put(Persistable entity);
+
+  void evict(Class<?> type, Key key);
+
+  void clear();
+
+  CacheStats stats();
+}
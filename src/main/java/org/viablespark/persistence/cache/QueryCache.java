@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import org.viablespark.persistence.Persistable;
+import org.viablespark.persistence.dsl.EntityMetadata;
+
+/**
+ * Results of entity queries keyed by entity type, statement text and bind values. Entries expire
+ * after a time to live and are evicted least recently used first once the total weight, one per row
+ * plus one per entry, exceeds the maximum. Every entry belongs to the table of its entity type and
+ * is dropped by {@link #invalidate(String)} for that table; tables that a query only joins are not
+ * tracked.
+ *
+ * <p>Rows are copied on {@link #put} and on every {@link #get}, so callers may modify them.
+ */
+public final class QueryCache {
+
+  private final long maximumWeight;
+  private final long timeToLive;
+  private final LongSupplier clock;
+  private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Set<QueryKey>> byTable = new HashMap<>();
+  private long weight;
+  private long generation;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public QueryCache(long maximumWeight, Duration timeToLive) {
+    this(maximumWeight, timeToLive, System::nanoTime);
+  }
+
+  QueryCache(long maximumWeight, Duration timeToLive, LongSupplier clock) {
+    if (maximumWeight < 1) {
+      throw new IllegalArgumentException("Maximum weight must be positive: " + maximumWeight);
+    }
+    if (timeToLive.isNegative() || timeToLive.isZero()) {
+      throw new IllegalArgumentException("Time to live must be positive: " + timeToLive);
+    }
+    this.maximumWeight = maximumWeight;
+    this.timeToLive = timeToLive.toNanos();
+    this.clock = clock;
+  }
+
+  /** Copies of the cached rows for the query, if present and not expired. */
+  public <T extends Persistable> Optional<List<T>> get(Class<T> type, String sql, Object[] values) {
+    QueryKey key = new QueryKey(type, sql, Arrays.asList(values.clone()));
+    List<Persistable> rows;
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.expiresAt() - clock.getAsLong() <= 0) {
+        remove(key);
+        entry = null;
+      }
+      if (entry == null) {
+        misses++;
+        return Optional.empty();
+      }
+      hits++;
+      rows = entry.rows();
+    }
+    List<T> copies = new ArrayList<>(rows.size());
+    for (Persistable row : rows) {
+      copies.add(type.cast(copy(row)));
+    }
+    return Optional.of(copies);
+  }
+
+  /**
+   * Token to pass to {@link #put}; read it before running the query so that a result overtaken by
+   * an invalidation is not cached.
+   */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /** Caches {@code rows} unless the cache was invalidated since {@code generation} was read. */
+  public void put(
+      Class<?> type,
+      String sql,
+      Object[] values,
+      List<? extends Persistable> rows,
+      long generation) {
+    long entryWeight = rows.size() + 1L;
+    if (entryWeight > maximumWeight) {
+      return;
+    }
+    List<Persistable> copies = new ArrayList<>(rows.size());
+    for (Persistable row : rows) {
+      copies.add(copy(row));
+    }
+    QueryKey key = new QueryKey(type, sql, Arrays.asList(values.clone()));
+    String table = EntityMetadata.of(type).tableName();
+    synchronized (this) {
+      if (generation != this.generation) {
+        return;
+      }
+      remove(key);
+      entries.put(key, new Entry(List.copyOf(copies), table, clock.getAsLong() + timeToLive));
+      byTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+      weight += entryWeight;
+      while (weight > maximumWeight) {
+        remove(entries.keySet().iterator().next());
+        evictions++;
+      }
+    }
+  }
+
+  /** Drops every cached result of an entity stored in {@code table}. */
+  public synchronized void invalidate(String table) {
+    generation++;
+    Set<QueryKey> keys = byTable.remove(table);
+    if (keys != null) {
+      for (QueryKey key : keys) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+          weight -= entry.rows().size() + 1L;
+        }
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    generation++;
+    entries.clear();
+    byTable.clear();
+    weight = 0;
+  }
+
+  /** Counters, with the current total weight reported as the size. */
+  public synchronized CacheStats stats() {
+    return new CacheStats(hits, misses, evictions, weight);
+  }
+
+  private void remove(QueryKey key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      weight -= entry.rows().size() + 1L;
+      Set<QueryKey> keys = byTable.get(entry.table());
+      if (keys != null) {
+        keys.remove(key);
+      }
+    }
+  }
+
+  private static Persistable copy(Persistable row) {
+    try {
+      return (Persistable) EntityMetadata.of(row.getClass()).copy(row);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Cannot copy cached " + row.getClass().getName(), ex);
+    }
+  }
+
+  private record QueryKey(Class<?> type, String sql, List<Object> values) {}
+
+  private record Entry(List<Persistable> rows, String table, long expiresAt) {}
+}
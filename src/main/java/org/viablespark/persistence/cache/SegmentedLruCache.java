@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.viablespark.persistence.Key;
+import org.viablespark.persistence.Persistable;
+import org.viablespark.persistence.dsl.EntityMetadata;
+
+/**
+ * {@link EntityCache} bounded by entry count and time to live, evicting with a segmented LRU
+ * policy: new entries enter a probation segment and move to a protected segment, sized at 80% of
+ * the capacity, on their second hit. One-off reads therefore cannot flush entities that are read
+ * repeatedly. Entries are spread over lock stripes, each with its own share of the capacity.
+ *
+ * <p>Entities are copied on {@link #put(Persistable)} and again on every {@link #get(Class, Key)},
+ * see {@link EntityMetadata#copy(Object)}.
+ */
+public final class SegmentedLruCache implements EntityCache {
+
+  private static final int MAX_STRIPES = 16;
+
+  private final Stripe[] stripes;
+  private final long timeToLive;
+  private final LongSupplier clock;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public SegmentedLruCache(int maximumSize, Duration timeToLive) {
+    this(maximumSize, timeToLive, System::nanoTime);
+  }
+
+  SegmentedLruCache(int maximumSize, Duration timeToLive, LongSupplier clock) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+    }
+    if (timeToLive.isNegative() || timeToLive.isZero()) {
+      throw new IllegalArgumentException("Time to live must be positive: " + timeToLive);
+    }
+    int count = Integer.highestOneBit(Math.min(MAX_STRIPES, maximumSize));
+    this.stripes = new Stripe[count];
+    int capacity = (maximumSize + count - 1) / count;
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new Stripe(capacity);
+    }
+    this.timeToLive = timeToLive.toNanos();
+    this.clock = clock;
+  }
+
+  @Override
+  public <T extends Persistable> Optional<T> get(Class<T> type, Key key) {
+    CacheKey id = CacheKey.of(type, key);
+    if (id == null) {
+      return Optional.empty();
+    }
+    Object cached = stripe(id).get(id, clock.getAsLong());
+    if (cached == null) {
+      misses.increment();
+      return Optional.empty();
+    }
+    hits.increment();
+    return Optional.of(type.cast(copy(cached)));
+  }
+
+  @Override
+  public void put(Persistable entity) {
+    CacheKey id = CacheKey.of(entity.getClass(), entity.getRefs());
+    if (id != null) {
+      int evicted = stripe(id).put(id, copy(entity), clock.getAsLong() + timeToLive);
+      if (evicted > 0) {
+        evictions.add(evicted);
+      }
+    }
+  }
+
+  @Override
+  public void evict(Class<?> type, Key key) {
+    CacheKey id = CacheKey.of(type, key);
+    if (id != null) {
+      stripe(id).remove(id);
+    }
+  }
+
+  @Override
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  @Override
+  public CacheStats stats() {
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+  }
+
+  private Stripe stripe(CacheKey id) {
+    int h = id.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+  }
+
+  private static Object copy(Object entity) {
+    try {
+      return EntityMetadata.of(entity.getClass()).copy(entity);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Cannot copy cached " + entity.getClass().getName(), ex);
+    }
+  }
+
+  private record Entry(Object value, long expiresAt) {}
+
+  private static final class Stripe {
+    private final int capacity;
+    private final int protectedCapacity;
+    private final LinkedHashMap<CacheKey, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<CacheKey, Entry> protectedSegment =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    Stripe(int capacity) {
+      this.capacity = capacity;
+      this.protectedCapacity = capacity * 4 / 5;
+    }
+
+    synchronized Object get(CacheKey id, long now) {
+      Entry entry = protectedSegment.get(id);
+      if (entry != null) {
+        if (entry.expiresAt() - now <= 0) {
+          protectedSegment.remove(id);
+          return null;
+        }
+        return entry.value();
+      }
+      entry = probation.get(id);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expiresAt() - now <= 0) {
+        probation.remove(id);
+        return null;
+      }
+      if (protectedCapacity > 0) {
+        probation.remove(id);
+        protectedSegment.put(id, entry);
+        if (protectedSegment.size() > protectedCapacity) {
+          Map.Entry<CacheKey, Entry> demoted = eldest(protectedSegment);
+          probation.put(demoted.getKey(), demoted.getValue());
+        }
+      }
+      return entry.value();
+    }
+
+    /** Adds or replaces an entry on probation; returns how many entries were evicted. */
+    synchronized int put(CacheKey id, Object value, long expiresAt) {
+      protectedSegment.remove(id);
+      probation.put(id, new Entry(value, expiresAt));
+      int evicted = 0;
+      while (probation.size() + protectedSegment.size() > capacity) {
+        eldest(probation.isEmpty() ? protectedSegment : probation);
+        evicted++;
+      }
+      return evicted;
+    }
+
+    synchronized void remove(CacheKey id) {
+      probation.remove(id);
+      protectedSegment.remove(id);
+    }
+
+    synchronized void clear() {
+      probation.clear();
+      protectedSegment.clear();
+    }
+
+    synchronized int size() {
+      return probation.size() + protectedSegment.size();
+    }
+
+    /** Removes and returns the least recently used entry of {@code segment}. */
+    private static Map.Entry<CacheKey, Entry> eldest(LinkedHashMap<CacheKey, Entry> segment) {
+      Iterator<Map.Entry<CacheKey, Entry>> it = segment.entrySet().iterator();
+      Map.Entry<CacheKey, Entry> eldest = it.next();
+      it.remove();
+      return Map.entry(eldest.getKey(), eldest.getValue());
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.viablespark.persistence.validation.SqlQueryValidator;
+
+/**
+ * Immutable, thread-safe form of a {@link SqlQuery}: the text is rendered and its placeholders
+ * checked once, by {@link SqlQuery#compile()}. Keep it in a constant and run it with fresh values
+ * through {@link #bind(Object...)}.
+ */
+public final class CompiledQuery {
+
+  private final String sql;
+  private final Object[] values;
+  private final int parameterCount;
+  private final String primaryKeyName;
+  private final List<String> fetchedRefs;
+  private final ParsedSql template;
+  private final Object[] positional;
+  private volatile EntitySql entitySql;
+
+  CompiledQuery(String sql, Object[] values, String primaryKeyName, List<String> fetchedRefs) {
+    SqlQueryValidator.assertPlaceholderCount(sql, values);
+    this.sql = sql;
+    this.values = values;
+    this.parameterCount = values.length;
+    this.primaryKeyName = primaryKeyName;
+    this.fetchedRefs = List.copyOf(fetchedRefs);
+    this.template = null;
+    this.positional = null;
+  }
+
+  /** A query with {@code :name} parameters, rewritten once by {@code template}. */
+  CompiledQuery(
+      ParsedSql template,
+      Object[] positional,
+      Map<String, ?> named,
+      String primaryKeyName,
+      List<String> fetchedRefs) {
+    this.sql = template.positionalSql();
+    this.values = template.bind(positional, named);
+    this.parameterCount = values.length;
+    this.primaryKeyName = primaryKeyName;
+    this.fetchedRefs = List.copyOf(fetchedRefs);
+    this.template = template;
+    this.positional = positional;
+  }
+
+  private CompiledQuery(CompiledQuery compiled, Object[] values) {
+    this.sql = compiled.sql;
+    this.values = values;
+    this.parameterCount = compiled.parameterCount;
+    this.primaryKeyName = compiled.primaryKeyName;
+    this.fetchedRefs = compiled.fetchedRefs;
+    this.template = compiled.template;
+    this.positional = compiled.positional;
+    this.entitySql = compiled.entitySql;
+  }
+
+  /** The same statement with new values, in placeholder order; nothing is rendered again. */
+  public CompiledQuery bind(Object... newValues) {
+    Object[] bound = newValues == null ? new Object[0] : newValues.clone();
+    if (bound.length != parameterCount) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Placeholder mismatch for SQL [%s]: expected %d values but found %d",
+              sql, parameterCount, bound.length));
+    }
+    return new CompiledQuery(this, bound);
+  }
+
+  /**
+   * The same statement with new values for its {@code :name} parameters; {@code ?} placeholders
+   * keep the values they were compiled with. Every name must be bound.
+   */
+  public CompiledQuery bind(Map<String, ?> named) {
+    if (template == null) {
+      throw new IllegalStateException("Query has no named parameters: " + sql);
+    }
+    return new CompiledQuery(this, template.bind(positional, named));
+  }
+
+  public String sql() {
+    return sql;
+  }
+
+  public Object[] values() {
+    return values.clone();
+  }
+
+  public int parameterCount() {
+    return parameterCount;
+  }
+
+  public String getPrimaryKeyName() {
+    return primaryKeyName;
+  }
+
+  /** {@code @Ref} properties loaded by join, see {@link SqlQuery#fetch(String...)}. */
+  public List<String> fetchedRefs() {
+    return fetchedRefs;
+  }
+
+  /**
+   * {@code SELECT <columns> FROM <table>} of {@code entityType}, with the joins of any {@link
+   * #fetchedRefs()}, followed by this query, as {@code BaseRepository.queryEntity} runs it.
+   * Remembered for the last entity type asked for.
+   */
+  public String entitySql(Class<?> entityType) {
+    EntitySql cached = entitySql;
+    if (cached != null && cached.type() == entityType) {
+      return cached.sql();
+    }
+    String primaryKey = EntityMetadata.of(entityType).primaryKey().orElse(primaryKeyName);
+    String select =
+        fetchedRefs.isEmpty()
+            ? WithSql.getSelectFromStatement(entityType, primaryKey)
+            : WithSql.getSelectFetchingStatement(entityType, primaryKey, fetchedRefs);
+    String text = select + " " + sql;
+    entitySql = new EntitySql(entityType, text);
+    return text;
+  }
+
+  @Override
+  public String toString() {
+    return sql + " " + Arrays.toString(values);
+  }
+
+  private record EntitySql(Class<?> type, String sql) {}
+}
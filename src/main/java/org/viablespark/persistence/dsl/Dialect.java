@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import java.util.List;
+
+/**
+ * Database specific SQL rendering for statements that standard SQL does not cover uniformly.
+ * Implement it to support another database.
+ */
+public interface Dialect {
+
+  /**
+   * {@code MERGE INTO ... USING (VALUES ...)}, as understood by HSQLDB and H2. Keys are not bound
+   * as arrays.
+   */
+  Dialect STANDARD = Dialects.STANDARD;
+
+  /** {@link #STANDARD} upserts, with arrays bound through {@code IN (UNNEST(?))}. */
+  Dialect HSQLDB = Dialects.HSQLDB;
+
+  /** {@code INSERT ... ON CONFLICT (...) DO UPDATE}. */
+  Dialect POSTGRESQL = Dialects.POSTGRESQL;
+
+  /** {@code INSERT ... ON DUPLICATE KEY UPDATE}. */
+  Dialect MYSQL = Dialects.MYSQL;
+
+  /**
+   * Insert-or-update of one row of {@code table}. The statement binds one parameter per key column
+   * followed by one per column, in the given order; {@code columns} may be empty.
+   */
+  String upsert(String table, List<String> keyColumns, List<String> columns);
+
+  /**
+   * Predicate matching {@code column} against the elements of one SQL {@code ARRAY} parameter, or
+   * {@code null} when the database cannot bind arrays, which is the default.
+   */
+  default String anyOf(String column) {
+    return null;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** Built-in {@link Dialect} implementations. */
+enum Dialects implements Dialect {
+  STANDARD {
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns) {
+      return merge(table, keyColumns, columns);
+    }
+  },
+
+  HSQLDB {
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns) {
+      return merge(table, keyColumns, columns);
+    }
+
+    @Override
+    public String anyOf(String column) {
+      return column + " IN (UNNEST(?))";
+    }
+  },
+
+  POSTGRESQL {
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns) {
+      StringBuilder sql = insert(table, concat(keyColumns, columns));
+      sql.append(" ON CONFLICT (").append(String.join(",", keyColumns)).append(") DO ");
+      if (columns.isEmpty()) {
+        return sql.append("NOTHING").toString();
+      }
+      sql.append("UPDATE SET ");
+      sql.append(
+          columns.stream().map(c -> c + " = EXCLUDED." + c).collect(Collectors.joining(",")));
+      return sql.toString();
+    }
+
+    @Override
+    public String anyOf(String column) {
+      return column + " = ANY(?)";
+    }
+  },
+
+  MYSQL {
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns) {
+      StringBuilder sql = insert(table, concat(keyColumns, columns));
+      sql.append(" ON DUPLICATE KEY UPDATE ");
+      List<String> updated = columns.isEmpty() ? keyColumns.subList(0, 1) : columns;
+      sql.append(
+          updated.stream().map(c -> c + " = VALUES(" + c + ")").collect(Collectors.joining(",")));
+      return sql.toString();
+    }
+  };
+
+  private static String merge(String table, List<String> keyColumns, List<String> columns) {
+    List<String> all = concat(keyColumns, columns);
+    StringBuilder sql = new StringBuilder("MERGE INTO ").append(table);
+    sql.append(" USING (VALUES (").append(placeholders(all.size())).append(")) AS src (");
+    sql.append(String.join(",", all)).append(") ON (");
+    sql.append(
+        keyColumns.stream()
+            .map(k -> table + "." + k + " = src." + k)
+            .collect(Collectors.joining(" AND ")));
+    sql.append(')');
+    if (!columns.isEmpty()) {
+      sql.append(" WHEN MATCHED THEN UPDATE SET ");
+      sql.append(columns.stream().map(c -> c + " = src." + c).collect(Collectors.joining(",")));
+    }
+    sql.append(" WHEN NOT MATCHED THEN INSERT (").append(String.join(",", all));
+    sql.append(") VALUES (");
+    sql.append(all.stream().map(c -> "src." + c).collect(Collectors.joining(",")));
+    return sql.append(')').toString();
+  }
+
+  private static StringBuilder insert(String table, List<String> columns) {
+    return new StringBuilder("INSERT INTO ")
+        .append(table)
+        .append(" (")
+        .append(String.join(",", columns))
+        .append(") VALUES (")
+        .append(placeholders(columns.size()))
+        .append(')');
+  }
+
+  private static List<String> concat(List<String> first, List<String> second) {
+    List<String> all = new ArrayList<>(first.size() + second.size());
+    all.addAll(first);
+    all.addAll(second);
+    return all;
+  }
+
+  private static String placeholders(int count) {
+    return count == 0 ? "" : "?" + ",?".repeat(count - 1);
+  }
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.viablespark.persistence.Key;
+import org.viablespark.persistence.Pair;
+import org.viablespark.persistence.Persistable;
+import org.viablespark.persistence.RefValue;
+
+/**
+ * Immutable description of how a {@link org.viablespark.persistence.Persistable} type maps to its
+ * table: table name, primary key and the annotation resolution of every getter. Instances are built
+ * once per class and shared by {@link WithSql}, the row mapper and the schema validator.
+ *
+ * <p>Getters, setters and the no-arg constructor are exposed through method handles adapted to
+ * erased signatures, so the per-row and per-save paths avoid {@link Method#invoke} entirely.
+ */
+public final class EntityMetadata {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER =
+      MethodType.methodType(void.class, Object.class, Object.class);
+  private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+
+  private static final ClassValue<EntityMetadata> CACHE =
+      new ClassValue<>() {
+        @Override
+        protected EntityMetadata computeValue(Class<?> type) {
+          return new EntityMetadata(type);
+        }
+      };
+
+  private final Class<?> type;
+  private final String tableName;
+  private final String primaryKey;
+  private final List<Property> properties;
+  private final List<Property> columns;
+  private final List<Property> namedFields;
+  private final List<Property> foreignRefs;
+  private final String selectColumns;
+  private final MethodHandle constructor;
+
+  private EntityMetadata(Class<?> type) {
+    this.type = type;
+    this.constructor = constructorHandle(type);
+    this.tableName =
+        type.isAnnotationPresent(Named.class)
+            ? type.getAnnotation(Named.class).value()
+            : camelToSnake(type.getSimpleName());
+    this.primaryKey =
+        Stream.of(type, type.getSuperclass())
+            .filter(Objects::nonNull)
+            .filter(tp -> tp.isAnnotationPresent(PrimaryKey.class))
+            .map(tp -> tp.getAnnotation(PrimaryKey.class).value())
+            .findFirst()
+            .orElse(null);
+
+    Map<String, Field> fields = new HashMap<>();
+    for (Field field : type.getDeclaredFields()) {
+      fields.put(field.getName(), field);
+    }
+    Method[] methods = type.getDeclaredMethods();
+    this.properties =
+        Arrays.stream(methods)
+            .filter(EntityMetadata::isGetter)
+            .sorted(Comparator.comparing(Method::getName))
+            .map(m -> new Property(m, fields.get(toLowerCamelCase(m.getName())), methods))
+            .collect(Collectors.toUnmodifiableList());
+
+    this.columns =
+        properties.stream()
+            .filter(p -> !p.isSkipped() && !p.isKey() && !p.isRefValue())
+            .collect(Collectors.toUnmodifiableList());
+    this.namedFields =
+        properties.stream()
+            .filter(p -> p.named() != null && p.ref() == null && !p.isRefValue())
+            .collect(Collectors.toUnmodifiableList());
+    this.foreignRefs =
+        properties.stream()
+            .filter(p -> p.ref() != null)
+            .filter(p -> p.type().isAnnotationPresent(PrimaryKey.class) || p.isRefValue())
+            .collect(Collectors.toUnmodifiableList());
+    this.selectColumns =
+        columns.stream().map(Property::selectExpression).collect(Collectors.joining(","));
+  }
+
+  public static EntityMetadata of(Class<?> type) {
+    return CACHE.get(Objects.requireNonNull(type, "Entity type must not be null"));
+  }
+
+  public Class<?> type() {
+    return type;
+  }
+
+  /** Table name from {@code @Named} on the class, or the snake_case simple name. */
+  public String tableName() {
+    return tableName;
+  }
+
+  /** Primary key column declared on the class or its direct superclass. */
+  public Optional<String> primaryKey() {
+    return Optional.ofNullable(primaryKey);
+  }
+
+  /** Every declared getter, sorted by method name. */
+  public List<Property> properties() {
+    return properties;
+  }
+
+  /** Getters that take part in select, insert and update statements. */
+  public List<Property> columns() {
+    return columns;
+  }
+
+  /** Getters mapped through {@code @Named} that are neither references nor {@link RefValue}. */
+  public List<Property> namedFields() {
+    return namedFields;
+  }
+
+  /** {@code @Ref} getters returning a keyed entity or a {@link RefValue}. */
+  public List<Property> foreignRefs() {
+    return foreignRefs;
+  }
+
+  /**
+   * The {@code @Ref} getter for property {@code name}, such as {@code contractor} for {@code
+   * getContractor()}, when it returns a keyed entity.
+   */
+  public Optional<Property> foreignRef(String name) {
+    if (name == null || name.isEmpty()) {
+      return Optional.empty();
+    }
+    String getter = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    return foreignRefs.stream().filter(p -> !p.isRefValue() && p.name().equals(getter)).findFirst();
+  }
+
+  /** Comma separated select list for {@link #columns()}; empty when there are none. */
+  public String selectColumns() {
+    return selectColumns;
+  }
+
+  /** Creates a new instance through the class's no-arg constructor. */
+  public Object newInstance() throws ReflectiveOperationException {
+    try {
+      return (Object) constructor.invokeExact();
+    } catch (ReflectiveOperationException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new InvocationTargetException(ex);
+    }
+  }
+
+  /**
+   * Copy of {@code source} made through the no-arg constructor and every getter/setter pair of its
+   * class and superclasses. The key is copied as well, and so is each {@code @Ref} entity, one
+   * level deep; other property values are shared.
+   */
+  public Object copy(Object source) throws ReflectiveOperationException {
+    return copy(source, true);
+  }
+
+  private Object copy(Object source, boolean copyRefs) throws ReflectiveOperationException {
+    Object target = newInstance();
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Property p : of(c).properties) {
+        if (p.setter == null || p.isKey()) {
+          continue;
+        }
+        Object value = p.get(source);
+        if (copyRefs && p.ref != null && value instanceof Persistable) {
+          value = of(value.getClass()).copy(value, false);
+        }
+        p.set(target, value);
+      }
+    }
+    if (source instanceof Persistable persistable && target instanceof Persistable copied) {
+      copied.setRefs(copyKey(persistable.getRefs()));
+    }
+    return target;
+  }
+
+  private static Key copyKey(Key key) {
+    if (key == null || key.count() == 0) {
+      return key;
+    }
+    Key copy = new Key();
+    for (Pair<String, Long> pair : key.getKeys()) {
+      copy.add(pair.getKey(), pair.getValue());
+    }
+    return copy;
+  }
+
+  static String camelToSnake(String str) {
+    return str.replaceAll("([a-z])([A-Z]+)", "$1_$2").toLowerCase();
+  }
+
+  static String toLowerCamelCase(String methodName) {
+    StringBuilder b = new StringBuilder(methodName.substring(3));
+    if (b.length() > 0) {
+      b.setCharAt(0, Character.toLowerCase(b.charAt(0)));
+    }
+    return b.toString();
+  }
+
+  /** A single getter together with its resolved mapping annotations and matching setter. */
+  public static final class Property {
+    private final Method getter;
+    private final Method setter;
+    private final MethodHandle getterHandle;
+    private final MethodHandle setterHandle;
+    private final String setterName;
+    private final Named named;
+    private final Ref ref;
+    private final boolean skipped;
+    private final String defaultColumn;
+    private final String selectExpression;
+
+    private Property(Method getter, Field field, Method[] declared) {
+      this.getter = getter;
+      this.named = annotation(getter, field, Named.class);
+      this.ref = annotation(getter, field, Ref.class);
+      this.skipped = annotation(getter, field, Skip.class) != null;
+      this.defaultColumn = camelToSnake(getter.getName().substring(3));
+      this.setterName = "set" + getter.getName().substring(3);
+      this.setter = findSetter(declared, setterName, getter.getReturnType());
+      // skipped properties are only reached through copy(), so they stay on plain reflection
+      this.getterHandle = skipped ? null : unreflect(getter, GETTER);
+      this.setterHandle = skipped || setter == null ? null : unreflect(setter, SETTER);
+      this.selectExpression = deriveSelectExpression();
+    }
+
+    /** Reads this property from {@code target}; failures of the getter itself are wrapped. */
+    public Object get(Object target) throws ReflectiveOperationException {
+      if (getterHandle == null) {
+        getter.trySetAccessible();
+        return getter.invoke(target);
+      }
+      try {
+        return (Object) getterHandle.invokeExact(target);
+      } catch (ReflectiveOperationException | Error ex) {
+        throw ex;
+      } catch (Throwable ex) {
+        throw new InvocationTargetException(ex);
+      }
+    }
+
+    /**
+     * Writes {@code value} through the matching setter; a missing setter is reported as {@link
+     * NoSuchMethodException}, failures of the setter itself are wrapped.
+     */
+    public void set(Object target, Object value) throws ReflectiveOperationException {
+      if (setter == null) {
+        throw new NoSuchMethodException(setterName);
+      }
+      if (setterHandle == null) {
+        setter.trySetAccessible();
+        setter.invoke(target, value);
+        return;
+      }
+      try {
+        setterHandle.invokeExact(target, value);
+      } catch (ReflectiveOperationException | Error ex) {
+        throw ex;
+      } catch (Throwable ex) {
+        throw new InvocationTargetException(ex);
+      }
+    }
+
+    public Method getter() {
+      return getter;
+    }
+
+    /** The matching {@code setXxx} method declared on the entity, if any. */
+    public Optional<Method> setter() {
+      return Optional.ofNullable(setter);
+    }
+
+    public String setterName() {
+      return setterName;
+    }
+
+    public String name() {
+      return getter.getName();
+    }
+
+    public Class<?> type() {
+      return getter.getReturnType();
+    }
+
+    public Named named() {
+      return named;
+    }
+
+    public Ref ref() {
+      return ref;
+    }
+
+    public boolean isSkipped() {
+      return skipped;
+    }
+
+    public boolean isKey() {
+      return type().equals(Key.class);
+    }
+
+    public boolean isRefValue() {
+      return type().equals(RefValue.class);
+    }
+
+    /** snake_case form of the property name, used when no annotation overrides the column. */
+    public String defaultColumn() {
+      return defaultColumn;
+    }
+
+    /** Column expression used by {@link WithSql#getSelectClause(Class, String...)}. */
+    public String selectExpression() {
+      return selectExpression;
+    }
+
+    /**
+     * {@link #selectExpression()} qualified by {@code table}. A non-empty {@code prefix} is put in
+     * front of the column label, so that the columns of joined tables can be told apart.
+     */
+    String selectExpression(String table, String prefix) {
+      if (named != null && ref == null) {
+        return table + "." + named.value() + " as \"" + prefix + defaultColumn + "\"";
+      }
+      String qualified = table + "." + selectExpression;
+      return prefix.isEmpty() ? qualified : qualified + " as " + prefix + selectExpression;
+    }
+
+    /** Column this getter is stored in, or empty when it cannot be derived statically. */
+    public Optional<String> column() {
+      if (named != null) {
+        return Optional.of(named.value());
+      }
+      if (ref != null) {
+        return WithSql.getPrimaryKey(type());
+      }
+      return Optional.of(defaultColumn);
+    }
+
+    private String deriveSelectExpression() {
+      if (named != null) {
+        if (ref != null) {
+          return named.value();
+        }
+        return named.value() + " as \"" + defaultColumn + "\"";
+      }
+      if (ref != null) {
+        return WithSql.getPrimaryKey(type()).orElseGet(() -> defaultColumn + "_id");
+      }
+      return defaultColumn;
+    }
+
+    private static <T extends Annotation> T annotation(
+        Method getter, Field field, Class<T> annotationType) {
+      if (getter.isAnnotationPresent(annotationType)) {
+        return getter.getAnnotation(annotationType);
+      }
+      if (field != null && field.isAnnotationPresent(annotationType)) {
+        return field.getAnnotation(annotationType);
+      }
+      return null;
+    }
+
+    private static Method findSetter(Method[] declared, String name, Class<?> parameterType) {
+      for (Method candidate : declared) {
+        if (candidate.getName().equals(name)
+            && candidate.getParameterCount() == 1
+            && !Modifier.isStatic(candidate.getModifiers())
+            && candidate.getParameterTypes()[0].equals(parameterType)) {
+          return candidate;
+        }
+      }
+      return null;
+    }
+  }
+
+  /** Instance, zero-argument {@code getXxx} methods; static and overloaded getters are ignored. */
+  private static boolean isGetter(Method method) {
+    return method.getName().startsWith("get")
+        && method.getParameterCount() == 0
+        && !Modifier.isStatic(method.getModifiers())
+        && !method.isBridge()
+        && !method.isSynthetic();
+  }
+
+  private static MethodHandle unreflect(Method method, MethodType type) {
+    try {
+      method.trySetAccessible();
+      return LOOKUP.unreflect(method).asType(type);
+    } catch (IllegalAccessException ex) {
+      return failing(ex, type);
+    }
+  }
+
+  private static MethodHandle constructorHandle(Class<?> type) {
+    try {
+      Constructor<?> ctor = type.getDeclaredConstructor();
+      ctor.trySetAccessible();
+      return LOOKUP.unreflectConstructor(ctor).asType(CONSTRUCTOR);
+    } catch (ReflectiveOperationException ex) {
+      return failing(ex, CONSTRUCTOR);
+    }
+  }
+
+  /** A handle of the given shape that rethrows {@code ex}, deferring the failure to first use. */
+  private static MethodHandle failing(ReflectiveOperationException ex, MethodType type) {
+    MethodHandle thrower = MethodHandles.throwException(type.returnType(), ex.getClass());
+    return MethodHandles.dropArguments(
+        MethodHandles.insertArguments(thrower, 0, ex), 0, type.parameterList());
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Map bounded by entry count that evicts the least recently read entry, so that a stream of one-off
+ * keys cannot push out the ones in steady use. Values are computed by the caller outside the lock;
+ * a concurrent duplicate simply replaces the first.
+ */
+final class LruCache<K, V> {
+
+  private final Map<K, V> entries;
+
+  LruCache(int maximumSize) {
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maximumSize;
+          }
+        };
+  }
+
+  synchronized V get(K key) {
+    return entries.get(key);
+  }
+
+  synchronized void put(K key, V value) {
+    entries.put(key, value);
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+}
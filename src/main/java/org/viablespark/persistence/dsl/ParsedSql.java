@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Placeholders of a SQL string, found by a small lexer that skips string literals, quoted
+ * identifiers, {@code --} and (nested) block comments and PostgreSQL dollar-quoted strings. Both
+ * JDBC {@code ?} placeholders and named {@code :name} parameters are recognised; {@code ::} casts
+ * and a {@code :} right after {@code [} or a name or number, as in the array slice {@code a[1:n]},
+ * are not parameters. {@code ??} is the JDBC escape for a literal question mark and the PostgreSQL
+ * JSON operators {@code ?|} and {@code ?&} are not placeholders either; a bare {@code ?} operator
+ * cannot be told apart and must be written as {@code ??}.
+ *
+ * <p>Named parameters are rewritten to {@code ?} once, together with the map from each placeholder
+ * to its name, so that binding is a simple array fill. Results are cached per distinct SQL string;
+ * the least recently used strings are dropped beyond a fixed number.
+ */
+public final class ParsedSql {
+
+  private static final int MAX_CACHED = 2048;
+  private static final LruCache<String, ParsedSql> CACHE = new LruCache<>(MAX_CACHED);
+  private static final int POSITIONAL = -1;
+
+  private final String sql;
+  private final String positionalSql;
+  private final int[] placeholders;
+  private final int[] slots;
+  private final List<String> names;
+
+  private ParsedSql(String sql) {
+    this.sql = sql;
+    int[] found = new int[8];
+    int[] ends = new int[8];
+    int count = 0;
+    List<String> distinct = new ArrayList<>();
+    int[] slotOf = new int[8];
+    int length = sql.length();
+    for (int i = 0; i < length; i++) {
+      char c = sql.charAt(i);
+      int end = -1;
+      int slot = POSITIONAL;
+      switch (c) {
+        case '\'', '"' -> i = skipQuoted(sql, i, c);
+        case '-' -> {
+          if (i + 1 < length && sql.charAt(i + 1) == '-') {
+            int eol = sql.indexOf('\n', i);
+            i = eol < 0 ? length : eol;
+          }
+        }
+        case '/' -> {
+          if (i + 1 < length && sql.charAt(i + 1) == '*') {
+            i = skipBlockComment(sql, i);
+          }
+        }
+        case '$' -> i = skipDollarQuoted(sql, i);
+        case ':' -> {
+          char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+          char previous = i > 0 ? sql.charAt(i - 1) : 0;
+          if (next == ':') {
+            i++;
+          } else if ((Character.isLetter(next) || next == '_')
+              && previous != '['
+              && !isNamePart(previous)) {
+            end = i + 2;
+            while (end < length && isNamePart(sql.charAt(end))) {
+              end++;
+            }
+            String name = sql.substring(i + 1, end);
+            slot = distinct.indexOf(name);
+            if (slot < 0) {
+              slot = distinct.size();
+              distinct.add(name);
+            }
+          }
+        }
+        case '?' -> {
+          char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+          if (next == '?' || next == '&' || (next == '|' && !sql.startsWith("||", i + 1))) {
+            i++;
+          } else {
+            end = i + 1;
+          }
+        }
+        default -> {}
+      }
+      if (end > 0) {
+        if (count == found.length) {
+          found = Arrays.copyOf(found, count * 2);
+          ends = Arrays.copyOf(ends, count * 2);
+          slotOf = Arrays.copyOf(slotOf, count * 2);
+        }
+        found[count] = i;
+        ends[count] = end;
+        slotOf[count++] = slot;
+        i = end - 1;
+      }
+    }
+    this.placeholders = Arrays.copyOf(found, count);
+    this.slots = Arrays.copyOf(slotOf, count);
+    this.names = List.copyOf(distinct);
+    if (distinct.isEmpty()) {
+      this.positionalSql = sql;
+    } else {
+      StringBuilder rewritten = new StringBuilder(length);
+      int from = 0;
+      for (int p = 0; p < count; p++) {
+        rewritten.append(sql, from, found[p]).append('?');
+        from = ends[p];
+      }
+      this.positionalSql = rewritten.append(sql, from, length).toString();
+    }
+  }
+
+  public static ParsedSql of(String sql) {
+    ParsedSql parsed = CACHE.get(sql);
+    if (parsed == null) {
+      parsed = new ParsedSql(sql);
+      CACHE.put(sql, parsed);
+    }
+    return parsed;
+  }
+
+  public String sql() {
+    return sql;
+  }
+
+  /** The SQL with every {@code :name} replaced by {@code ?}; the SQL itself when there are none. */
+  public String positionalSql() {
+    return positionalSql;
+  }
+
+  /** Number of placeholders, counting each occurrence of a named parameter. */
+  public int parameterCount() {
+    return placeholders.length;
+  }
+
+  /** Character offsets of the placeholders in {@link #sql()}, in order. */
+  public int[] placeholderPositions() {
+    return placeholders.clone();
+  }
+
+  public boolean hasNamedParameters() {
+    return !names.isEmpty();
+  }
+
+  /** Distinct parameter names, in order of first use. */
+  public List<String> parameterNames() {
+    return names;
+  }
+
+  /**
+   * Values for {@link #positionalSql()} in placeholder order: {@code ?} placeholders take the next
+   * of {@code positional}, named ones their value from {@code named}.
+   */
+  public Object[] bind(Object[] positional, Map<String, ?> named) {
+    Object[] values = new Object[slots.length];
+    int next = 0;
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] == POSITIONAL) {
+        if (next >= positional.length) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "Placeholder mismatch for SQL [%s]: more ? placeholders than the %d values",
+                  sql, positional.length));
+        }
+        values[i] = positional[next++];
+      } else {
+        String name = names.get(slots[i]);
+        if (!named.containsKey(name)) {
+          throw new IllegalArgumentException(
+              String.format("No value bound for parameter :%s in SQL [%s]", name, sql));
+        }
+        values[i] = named.get(name);
+      }
+    }
+    if (next != positional.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Placeholder mismatch for SQL [%s]: expected %d positional values but found %d",
+              sql, next, positional.length));
+    }
+    return values;
+  }
+
+  /** Index of the closing quote; a doubled quote is an escaped one. */
+  private static int skipQuoted(String sql, int start, char quote) {
+    for (int i = start + 1; i < sql.length(); i++) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          i++;
+        } else {
+          return i;
+        }
+      }
+    }
+    return sql.length();
+  }
+
+  private static int skipBlockComment(String sql, int start) {
+    int depth = 0;
+    for (int i = start; i < sql.length() - 1; i++) {
+      if (sql.charAt(i) == '/' && sql.charAt(i + 1) == '*') {
+        depth++;
+        i++;
+      } else if (sql.charAt(i) == '*' && sql.charAt(i + 1) == '/') {
+        i++;
+        if (--depth == 0) {
+          return i;
+        }
+      }
+    }
+    return sql.length();
+  }
+
+  /**
+   * Index of the end of a {@code $tag$...$tag$} string starting at {@code start}, or {@code start}
+   * itself when there is none, as for {@code $1} parameters or {@code $} inside identifiers.
+   */
+  private static int skipDollarQuoted(String sql, int start) {
+    if (start > 0 && Character.isJavaIdentifierPart(sql.charAt(start - 1))) {
+      return start;
+    }
+    int i = start + 1;
+    while (i < sql.length() && sql.charAt(i) != '$') {
+      char c = sql.charAt(i);
+      boolean valid = i == start + 1 ? Character.isLetter(c) || c == '_' : isNamePart(c);
+      if (!valid) {
+        return start;
+      }
+      i++;
+    }
+    if (i >= sql.length()) {
+      return start;
+    }
+    String tag = sql.substring(start, i + 1);
+    int close = sql.indexOf(tag, i + 1);
+    return close < 0 ? start : close + tag.length() - 1;
+  }
+
+  private static boolean isNamePart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+}
@@ -13,15 +13,28 @@
 
 package org.viablespark.persistence.dsl;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.viablespark.persistence.Key;
+import org.viablespark.persistence.Pair;
 
 public class SqlQuery {
 
+  private static final String TOKEN_VERSION = "k1:";
+
+  /** Largest {@code IN} list {@link #whereIn(String, Collection)} renders before splitting. */
+  public static final int DEFAULT_MAX_IN_LIST = 1000;
+
   private enum Mode {
     RAW,
     COMPOSED
@@ -38,6 +51,9 @@ public class SqlQuery {
   private Integer limit;
   private Integer offset;
   private String primaryKeyName;
+  private final List<String> fetchedRefs = new ArrayList<>();
+  private Keyset keyset;
+  private final Map<String, Object> namedValues = new LinkedHashMap<>();
 
   public SqlQuery() {
     this.mode = Mode.COMPOSED;
@@ -139,6 +155,83 @@ public class SqlQuery {
     return this;
   }
 
+  /**
+   * {@code column IN (?,...)} over {@code values}, and-ed with any earlier conditions; see {@link
+   * #whereIn(String, Collection, int)}.
+   */
+  public SqlQuery whereIn(String column, Collection<?> values) {
+    return whereIn(column, values, DEFAULT_MAX_IN_LIST);
+  }
+
+  /**
+   * {@code column IN (?,...)} over {@code values}, and-ed with any earlier conditions. The list is
+   * padded to a power-of-two size by repeating its last value, so lists of different lengths share
+   * a few statement texts (see {@link WithSql#bucketSize(int, int)}). Lists longer than {@code
+   * maxListSize} are split into {@code (column IN (...) OR column IN (...))}. An empty collection
+   * matches no rows.
+   */
+  public SqlQuery whereIn(String column, Collection<?> values, int maxListSize) {
+    ensureComposable();
+    if (maxListSize < 1) {
+      throw new IllegalArgumentException("Maximum IN list size must be positive: " + maxListSize);
+    }
+    String name = normalize(column);
+    Object[] all = values == null ? new Object[0] : values.toArray();
+    String fragment = "1 = 0";
+    Object[] bound = new Object[0];
+    if (all.length > 0) {
+      StringBuilder predicate = new StringBuilder();
+      List<Object> padded = new ArrayList<>(all.length);
+      for (int from = 0; from < all.length; from += maxListSize) {
+        int to = Math.min(from + maxListSize, all.length);
+        int size = WithSql.bucketSize(to - from, maxListSize);
+        predicate.append(from == 0 ? "" : " OR ").append(name).append(" IN (");
+        predicate.append("?,".repeat(size - 1)).append("?)");
+        for (int i = 0; i < size; i++) {
+          padded.add(all[Math.min(from + i, to - 1)]);
+        }
+      }
+      fragment = all.length > maxListSize ? "(" + predicate + ")" : predicate.toString();
+      bound = padded.toArray();
+    }
+    whereClauses.add(
+        whereClauses.isEmpty()
+            ? WhereClause.initial(fragment, bound)
+            : WhereClause.and(fragment, bound));
+    return this;
+  }
+
+  /**
+   * {@code column} matching any of {@code values}, bound as a single {@code BIGINT} array; see
+   * {@link #whereAnyOf(String, String, Collection, Dialect)}.
+   */
+  public SqlQuery whereAnyOf(String column, long[] values, Dialect dialect) {
+    return whereAnyOf(
+        column, "BIGINT", Arrays.stream(values).boxed().collect(Collectors.toList()), dialect);
+  }
+
+  /**
+   * {@code column} matching any of {@code values}, and-ed with any earlier conditions. When {@code
+   * dialect} supports it (see {@link Dialect#anyOf(String)}) the values are bound as one SQL {@code
+   * ARRAY} of {@code elementType}, created with {@code Connection.createArrayOf}, so the statement
+   * and its plan are the same for any number of values; otherwise this is {@link #whereIn(String,
+   * Collection)}.
+   */
+  public SqlQuery whereAnyOf(
+      String column, String elementType, Collection<?> values, Dialect dialect) {
+    String predicate = dialect.anyOf(normalize(column));
+    if (predicate == null || values == null || values.isEmpty()) {
+      return whereIn(column, values);
+    }
+    ensureComposable();
+    Object[] bound = {new SqlArrayValue(elementType, values.toArray())};
+    whereClauses.add(
+        whereClauses.isEmpty()
+            ? WhereClause.initial(predicate, bound)
+            : WhereClause.and(predicate, bound));
+    return this;
+  }
+
   public SqlQuery orderBy(String expression) {
     ensureComposable();
     orderClauses.add(OrderBy.raw(expression));
@@ -173,13 +266,170 @@ public class SqlQuery {
     return limit(maxRows).offset(startAt);
   }
 
+  /**
+   * Keyset (seek) pagination: restricts the query to rows ordered after {@code lastValue} in {@code
+   * column}. See {@link #after(List, Direction, Object...)}.
+   */
+  public SqlQuery after(String column, Object lastValue) {
+    return after(List.of(column), Direction.ASC, lastValue);
+  }
+
+  /**
+   * Ascending keyset pagination over {@code columns}; see {@link #after(List, Direction,
+   * Object...)}.
+   */
+  public SqlQuery after(List<String> columns, Object... lastValues) {
+    return after(columns, Direction.ASC, lastValues);
+  }
+
+  /**
+   * Keyset (seek) pagination over {@code columns}: adds a row-value predicate {@code (a,b) > (?,?)}
+   * ({@code <} for {@link Direction#DESC}) on the last values of the previous page, and-ed with the
+   * existing where conditions. Without {@code lastValues} only the ordering is applied, which is
+   * what the first page needs. The query is ordered by {@code columns} when no {@code ORDER BY} is
+   * given; an explicit {@code ORDER BY} must start with them, sorted in {@code direction}.
+   */
+  public SqlQuery after(List<String> columns, Direction direction, Object... lastValues) {
+    ensureComposable();
+    if (columns == null || columns.isEmpty()) {
+      throw new IllegalArgumentException("At least one keyset column must be specified");
+    }
+    Object[] values = lastValues == null ? new Object[0] : lastValues.clone();
+    if (values.length != 0 && values.length != columns.size()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Keyset over %s needs %d last values, got %d",
+              columns, columns.size(), values.length));
+    }
+    List<String> normalized = columns.stream().map(SqlQuery::normalize).toList();
+    this.keyset = new Keyset(normalized, direction == null ? Direction.ASC : direction, values);
+    return this;
+  }
+
+  /** Ascending keyset pagination after the last row's {@link Key}, over all of its columns. */
+  public SqlQuery after(Key lastKey) {
+    if (lastKey == null || lastKey.count() == 0) {
+      throw new IllegalArgumentException("Keyset pagination needs a key with at least one column");
+    }
+    List<String> columns = new ArrayList<>(lastKey.count());
+    List<Object> values = new ArrayList<>(lastKey.count());
+    for (Pair<String, Long> pair : lastKey.getKeys()) {
+      columns.add(pair.getKey());
+      values.add(pair.getValue());
+    }
+    return after(columns, Direction.ASC, values.toArray());
+  }
+
+  /**
+   * Continues, in ascending order of {@code keyColumns}, after the page that produced {@code token}
+   * (see {@link #continuationToken(Key)}). Only the values are taken from the token; a token for
+   * other columns than {@code keyColumns} is rejected. A null or blank token just orders by {@code
+   * keyColumns}, as the first page needs.
+   */
+  public SqlQuery afterToken(String token, List<String> keyColumns) {
+    if (token == null || token.isBlank()) {
+      return after(keyColumns);
+    }
+    if (keyColumns == null || keyColumns.isEmpty()) {
+      throw new IllegalArgumentException("At least one keyset column must be specified");
+    }
+    Key key = decodeToken(token);
+    if (key.count() != keyColumns.size()) {
+      throw new IllegalArgumentException("Continuation token does not match " + keyColumns);
+    }
+    Object[] values = new Object[keyColumns.size()];
+    int i = 0;
+    for (Pair<String, Long> pair : key.getKeys()) {
+      if (!keyColumns.get(i).trim().equalsIgnoreCase(pair.getKey())) {
+        throw new IllegalArgumentException("Continuation token does not match " + keyColumns);
+      }
+      values[i++] = pair.getValue();
+    }
+    return after(keyColumns, Direction.ASC, values);
+  }
+
+  /**
+   * Opaque token for the page ending with {@code lastKey}, accepted by {@link #afterToken(String,
+   * List)}.
+   */
+  public static String continuationToken(Key lastKey) {
+    if (lastKey == null || lastKey.count() == 0) {
+      throw new IllegalArgumentException("Continuation token needs a key with at least one column");
+    }
+    StringBuilder plain = new StringBuilder(TOKEN_VERSION);
+    for (Pair<String, Long> pair : lastKey.getKeys()) {
+      plain.append(pair.getKey()).append('=').append(pair.getValue()).append(',');
+    }
+    plain.setLength(plain.length() - 1);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(plain.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Key decodeToken(String token) {
+    try {
+      String plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      if (!plain.startsWith(TOKEN_VERSION)) {
+        throw new IllegalArgumentException("Unsupported continuation token: " + token);
+      }
+      Key key = new Key();
+      for (String entry : plain.substring(TOKEN_VERSION.length()).split(",")) {
+        int split = entry.lastIndexOf('=');
+        key.add(entry.substring(0, split), Long.valueOf(entry.substring(split + 1)));
+      }
+      return key;
+    } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+      throw new IllegalArgumentException("Invalid continuation token: " + token, ex);
+    }
+  }
+
+  /**
+   * Value of the {@code :name} parameter, which may appear any number of times in any fragment,
+   * including raw SQL. Named and {@code ?} placeholders can be mixed.
+   */
+  public SqlQuery bind(String name, Object value) {
+    if (name == null || name.isBlank()) {
+      throw new IllegalArgumentException("Parameter name must not be blank");
+    }
+    namedValues.put(name.startsWith(":") ? name.substring(1) : name, value);
+    return this;
+  }
+
+  /** Binds every entry of {@code values}; see {@link #bind(String, Object)}. */
+  public SqlQuery bind(Map<String, ?> values) {
+    values.forEach(this::bind);
+    return this;
+  }
+
   public SqlQuery primaryKey(String pkName) {
     ensureComposable();
     this.primaryKeyName = pkName;
     return this;
   }
 
+  /**
+   * Loads the entities of the given {@code @Ref} properties, such as {@code contractor}, together
+   * with the queried entity through a {@code LEFT JOIN} when run by {@code queryEntity}; repeated
+   * references share one instance. Columns that the joined tables have as well must be qualified by
+   * the entity's table name in this query.
+   */
+  public SqlQuery fetch(String... refs) {
+    ensureComposable();
+    for (String ref : refs) {
+      String name = normalize(ref);
+      if (!fetchedRefs.contains(name)) {
+        fetchedRefs.add(name);
+      }
+    }
+    return this;
+  }
+
+  /** The statement text, with any {@code :name} parameters rewritten to {@code ?}. */
   public String sql() {
+    return ParsedSql.of(render()).positionalSql();
+  }
+
+  private String render() {
     if (mode == Mode.RAW) {
       return rawSql;
     }
@@ -189,11 +439,22 @@ public class SqlQuery {
     for (SqlClause clause : bodyClauses) {
       appendSegment(sqlBuilder, clause.clause());
     }
-    if (!whereClauses.isEmpty()) {
+    if (keyset != null && keyset.seeks()) {
+      String seek = keyset.predicate();
+      appendSegment(
+          sqlBuilder,
+          whereClauses.isEmpty()
+              ? "WHERE " + seek
+              : "WHERE (" + buildWhereClause().substring(6) + ") AND " + seek);
+    } else if (!whereClauses.isEmpty()) {
       appendSegment(sqlBuilder, buildWhereClause());
     }
-    if (!orderClauses.isEmpty()) {
-      String order = orderClauses.stream().map(OrderBy::render).collect(Collectors.joining(", "));
+    List<OrderBy> ordering = orderClauses;
+    if (keyset != null) {
+      ordering = keyset.ordering(orderClauses);
+    }
+    if (!ordering.isEmpty()) {
+      String order = ordering.stream().map(OrderBy::render).collect(Collectors.joining(", "));
       appendSegment(sqlBuilder, "ORDER BY " + order);
     }
     if (limit != null) {
@@ -205,7 +466,27 @@ public class SqlQuery {
     return sqlBuilder.toString().trim();
   }
 
+  /**
+   * Renders and validates this query once into an immutable {@link CompiledQuery}. Later changes to
+   * this builder do not affect it.
+   */
+  public CompiledQuery compile() {
+    ParsedSql parsed = ParsedSql.of(render());
+    Object[] positional = positionalValues();
+    if (!parsed.hasNamedParameters()) {
+      return new CompiledQuery(parsed.sql(), positional, primaryKeyName, fetchedRefs);
+    }
+    return new CompiledQuery(parsed, positional, namedValues, primaryKeyName, fetchedRefs);
+  }
+
+  /** Values in placeholder order, named parameters included. */
   public Object[] values() {
+    Object[] positional = positionalValues();
+    ParsedSql parsed = ParsedSql.of(render());
+    return parsed.hasNamedParameters() ? parsed.bind(positional, namedValues) : positional;
+  }
+
+  private Object[] positionalValues() {
     if (mode == Mode.RAW) {
       return rawValues.clone();
     }
@@ -217,6 +498,9 @@ public class SqlQuery {
     for (WhereClause clause : whereClauses) {
       Collections.addAll(values, clause.values());
     }
+    if (keyset != null) {
+      Collections.addAll(values, keyset.values());
+    }
     return values.toArray();
   }
 
@@ -224,6 +508,10 @@ public class SqlQuery {
     return primaryKeyName;
   }
 
+  public List<String> getFetchedRefs() {
+    return List.copyOf(fetchedRefs);
+  }
+
   public boolean isRaw() {
     return mode == Mode.RAW;
   }
@@ -314,6 +602,49 @@ public class SqlQuery {
     }
   }
 
+  private record Keyset(List<String> columns, Direction direction, Object[] values) {
+
+    boolean seeks() {
+      return values.length > 0;
+    }
+
+    String predicate() {
+      String operator = direction == Direction.DESC ? " < " : " > ";
+      if (columns.size() == 1) {
+        return columns.get(0) + operator + "?";
+      }
+      return "("
+          + String.join(", ", columns)
+          + ")"
+          + operator
+          + "("
+          + "?, ".repeat(columns.size() - 1)
+          + "?)";
+    }
+
+    /**
+     * Orders by the keyset columns, or checks that an explicit ordering starts with them in the
+     * keyset direction; otherwise the seek predicate would skip rows.
+     */
+    List<OrderBy> ordering(List<OrderBy> explicit) {
+      if (explicit.isEmpty()) {
+        return columns.stream().map(column -> OrderBy.from(column, direction)).toList();
+      }
+      for (int i = 0; i < columns.size(); i++) {
+        OrderBy leading = i < explicit.size() ? explicit.get(i) : null;
+        if (leading == null
+            || !columns.get(i).equalsIgnoreCase(leading.column())
+            || leading.sortDirection() != direction) {
+          throw new IllegalStateException(
+              String.format(
+                  "Keyset pagination over %s requires ORDER BY to start with those columns %s",
+                  columns, direction));
+        }
+      }
+      return explicit;
+    }
+  }
+
   private record OrderBy(String expression, Direction direction) {
     private OrderBy(String expression, Direction direction) {
       this.expression = expression.trim();
@@ -334,5 +665,31 @@ public class SqlQuery {
       }
       return expression + " " + direction.name().toLowerCase();
     }
+
+    /**
+     * Sort direction, also when given as a trailing {@code ASC}/{@code DESC}; ascending if none.
+     */
+    Direction sortDirection() {
+      if (direction != null) {
+        return direction;
+      }
+      String[] parts = expression.split("\\s+");
+      return parts.length == 2 && parts[1].equalsIgnoreCase("desc")
+          ? Direction.DESC
+          : Direction.ASC;
+    }
+
+    /** The ordered expression without a trailing {@code ASC}/{@code DESC}. */
+    String column() {
+      if (direction != null) {
+        return expression;
+      }
+      String[] parts = expression.split("\\s+");
+      if (parts.length == 2
+          && (parts[1].equalsIgnoreCase("asc") || parts[1].equalsIgnoreCase("desc"))) {
+        return parts[0];
+      }
+      return expression;
+    }
   }
 }
@@ -19,69 +19,40 @@ import java.lang.reflect.Method;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 import org.viablespark.persistence.Key;
 import org.viablespark.persistence.Pair;
 import org.viablespark.persistence.Persistable;
-import org.viablespark.persistence.RefValue;
 
 public final class WithSql {
 
   public static String getSelectClause(Class<?> cls, String... customFields) {
-    List<Method> methods =
-        Arrays.stream(cls.getDeclaredMethods())
-            .filter(m -> m.getName().startsWith("get"))
-            .filter(m -> getAnnotation(m, cls, Skip.class).isEmpty())
-            .filter(m -> !m.getReturnType().equals(Key.class))
-            .filter(m -> !m.getReturnType().equals(RefValue.class))
-            .sorted(Comparator.comparing(Method::getName))
-            .collect(Collectors.toList());
-
+    String columns = EntityMetadata.of(cls).selectColumns();
+    if (customFields.length == 0) {
+      return columns;
+    }
     StringBuilder sql = new StringBuilder();
-
     for (String cName : customFields) {
       sql.append(cName).append(",");
     }
-
-    for (Method m : methods) {
-      sql.append(deriveNameForSelectClause(m, cls)).append(",");
+    if (columns.isEmpty()) {
+      sql.deleteCharAt(sql.length() - 1);
+    } else {
+      sql.append(columns);
     }
-    sql.deleteCharAt(sql.length() - 1);
     return sql.toString();
   }
 
   public static SqlClause getUpdateClause(Persistable entity) throws SQLException {
     try {
-      List<Method> methods =
-          Arrays.stream(entity.getClass().getDeclaredMethods())
-              .filter(m -> m.getName().startsWith("get"))
-              .filter(m -> getAnnotation(m, entity.getClass(), Skip.class).isEmpty())
-              .filter(m -> !m.getReturnType().equals(RefValue.class))
-              .filter(m -> !m.getReturnType().equals(Key.class))
-              .sorted(Comparator.comparing(Method::getName))
-              .collect(Collectors.toList());
-
-      StringBuilder sql = new StringBuilder("SET ");
-      List<Object> answers = new ArrayList<>(methods.size());
-      for (Method m : methods) {
-        var derivedName = deriveName(m, entity);
-        if (derivedName.isPresent()) {
-          sql.append(derivedName.get()).append("=?,");
-          answers.add(deriveValue(m, entity));
-        }
-      }
-      sql.deleteCharAt(sql.length() - 1); // remove last comma.
-      Pair<String, Long> primaryKey = entity.getRefs().primaryKey();
-      sql.append(" WHERE ").append(primaryKey.getKey()).append("=?");
-      answers.add(primaryKey.getValue());
-
-      // sql = new StringBuilder(sql.toString().replaceAll(".$", ""));
-      return new SqlClause(sql.toString(), answers.toArray());
+      return Statements.of(entity.getClass()).bind(entity, Statements.UPDATE_CLAUSE);
     } catch (Exception ex) {
       throw new SQLException("Failed to Create a SQL Clause", ex);
     }
@@ -89,94 +60,454 @@ public final class WithSql {
 
   public static SqlClause getInsertClause(Persistable entity) throws SQLException {
     try {
-      List<Method> methods =
-          Arrays.stream(entity.getClass().getDeclaredMethods())
-              .filter(m -> m.getName().startsWith("get"))
-              .filter(m -> getAnnotation(m, entity.getClass(), Skip.class).isEmpty())
-              .filter(m -> !m.getReturnType().equals(RefValue.class))
-              .filter(m -> !m.getReturnType().equals(Key.class))
-              .sorted(Comparator.comparing(Method::getName))
-              .collect(Collectors.toList());
-
-      StringBuilder columns = new StringBuilder("(");
-      StringBuilder values = new StringBuilder("VALUES (");
-      List<Object> answers = new ArrayList<>(methods.size());
-      for (Method m : methods) {
-        var derivedNamed = deriveName(m, entity);
-        if (derivedNamed.isPresent()) {
-          columns.append(derivedNamed.get()).append(",");
-          values.append("?,");
-          answers.add(deriveValue(m, entity));
-        }
-      }
-      columns = new StringBuilder(columns.toString().replaceAll(".$", "") + ")");
-      values = new StringBuilder(values.toString().replaceAll(".$", "") + ")");
+      return Statements.of(entity.getClass()).bind(entity, Statements.INSERT_CLAUSE);
+    } catch (Exception ex) {
+      throw new SQLException(ex.getMessage(), ex);
+    }
+  }
+
+  /** Complete {@code UPDATE} statement for {@code entity}, keyed by its primary key. */
+  public static SqlClause getUpdateStatement(Persistable entity) throws SQLException {
+    try {
+      return Statements.of(entity.getClass()).bind(entity, Statements.UPDATE);
+    } catch (Exception ex) {
+      throw new SQLException("Failed to Create a SQL Clause", ex);
+    }
+  }
 
-      String sql = columns + " " + values;
+  /**
+   * Complete {@code UPDATE} statement for {@code entity} that writes only {@code columns}, in the
+   * order the entity declares them. Every column must be one a full update would write.
+   */
+  public static SqlClause getUpdateStatement(Persistable entity, Collection<String> columns)
+      throws SQLException {
+    try {
+      return Statements.of(entity.getClass()).bindPartial(entity, columns);
+    } catch (Exception ex) {
+      throw new SQLException("Failed to Create a SQL Clause", ex);
+    }
+  }
 
-      return new SqlClause(sql, answers.toArray());
+  /**
+   * Column name to bound value for every column an insert or update of {@code entity} writes, in
+   * declaration order. References are reduced to their key value.
+   */
+  public static Map<String, Object> getColumnValues(Persistable entity) throws SQLException {
+    try {
+      return Statements.of(entity.getClass()).columnValues(entity);
     } catch (Exception ex) {
       throw new SQLException(ex.getMessage(), ex);
     }
   }
 
-  private static Optional<String> deriveName(Method m, Persistable entity) throws Exception {
-    Optional<Named> namedOption = getAnnotation(m, entity.getClass(), Named.class);
-    if (namedOption.isPresent()) {
-      return Optional.of(namedOption.get().value());
+  /** Complete {@code INSERT} statement for {@code entity}. */
+  public static SqlClause getInsertStatement(Persistable entity) throws SQLException {
+    try {
+      return Statements.of(entity.getClass()).bind(entity, Statements.INSERT);
+    } catch (Exception ex) {
+      throw new SQLException(ex.getMessage(), ex);
     }
+  }
 
-    Optional<Ref> refOption = getAnnotation(m, entity.getClass(), Ref.class);
-    if (refOption.isPresent()) {
-      Persistable refObj = (Persistable) m.invoke(entity);
-      if (refObj != null && refObj.getRefs() != Key.None) {
-        return Optional.of(refObj.getRefs().primaryKey().getKey());
-      } else {
-        return Optional.empty();
-      }
+  /**
+   * Insert-or-update statement for {@code entity} in the given dialect, matching on its primary
+   * key. Binds the key value first, then the columns an insert would write.
+   */
+  public static SqlClause getUpsertStatement(Persistable entity, Dialect dialect)
+      throws SQLException {
+    try {
+      return Statements.of(entity.getClass()).bindUpsert(entity, dialect);
+    } catch (Exception ex) {
+      throw new SQLException("Failed to Create a SQL Clause", ex);
     }
+  }
 
-    String name = m.getName().substring(3);
-    return Optional.of(camelToSnake(name));
+  /**
+   * {@code SELECT <columns> FROM <table>} with {@code primaryKey} leading the column list; without
+   * a primary key only the entity columns are selected.
+   */
+  public static String getSelectFromStatement(Class<?> cls, String primaryKey) {
+    return Statements.of(cls)
+        .selects
+        .computeIfAbsent(
+            primaryKey == null ? Statements.NO_KEY : primaryKey,
+            pk ->
+                "SELECT "
+                    + (primaryKey == null ? getSelectClause(cls) : getSelectClause(cls, primaryKey))
+                    + " FROM "
+                    + EntityMetadata.of(cls).tableName());
   }
 
-  private static Object deriveValue(Method m, Persistable entity) throws Exception {
-    Optional<Ref> refOption = getAnnotation(m, entity.getClass(), Ref.class);
-    if (refOption.isPresent()) {
-      Persistable refObj = (Persistable) m.invoke(entity);
-      return refObj.getRefs().primaryKey().getValue();
+  /**
+   * {@code SELECT ... FROM <table> LEFT JOIN ...} that also reads the entities referenced by the
+   * given {@code @Ref} properties. Columns of the entity are qualified by its table; those of each
+   * referenced entity come from the alias {@link #fetchJoinAlias(String)} and carry its name and an
+   * underscore as label prefix.
+   */
+  public static String getSelectFetchingStatement(
+      Class<?> cls, String primaryKey, List<String> refs) {
+    return Statements.of(cls)
+        .joinedSelects
+        .computeIfAbsent(
+            primaryKey + ":" + String.join(",", refs),
+            k -> buildSelectFetching(cls, primaryKey, refs));
+  }
+
+  /** Table alias of the entity joined for {@code @Ref} property {@code ref}. */
+  public static String fetchJoinAlias(String ref) {
+    return "j_" + ref;
+  }
+
+  private static String buildSelectFetching(Class<?> cls, String primaryKey, List<String> refs) {
+    EntityMetadata metadata = EntityMetadata.of(cls);
+    String table = metadata.tableName();
+    List<String> select = new ArrayList<>();
+    if (primaryKey != null) {
+      select.add(table + "." + primaryKey);
+    }
+    metadata.columns().forEach(p -> select.add(p.selectExpression(table, "")));
+    StringBuilder joins = new StringBuilder();
+    for (String ref : refs) {
+      EntityMetadata.Property property =
+          metadata
+              .foreignRef(ref)
+              .orElseThrow(
+                  () ->
+                      new IllegalArgumentException(
+                          String.format(
+                              "%s has no @Ref property '%s' to fetch", cls.getName(), ref)));
+      EntityMetadata target = EntityMetadata.of(property.type());
+      String targetKey =
+          target
+              .primaryKey()
+              .orElseThrow(
+                  () ->
+                      new IllegalArgumentException(
+                          property.type().getName() + " has no @PrimaryKey to join on"));
+      String alias = fetchJoinAlias(ref);
+      select.add(alias + "." + targetKey + " as " + alias + "_" + targetKey);
+      target.columns().forEach(p -> select.add(p.selectExpression(alias, alias + "_")));
+      joins.append(" LEFT JOIN ").append(target.tableName()).append(' ').append(alias);
+      joins.append(" ON ").append(alias).append('.').append(targetKey).append(" = ");
+      joins.append(table).append('.').append(property.column().orElse(targetKey));
     }
-    return m.invoke(entity);
+    return "SELECT " + String.join(",", select) + " FROM " + table + joins;
+  }
+
+  /** {@code SELECT ... WHERE <primaryKey> = ?} for loading a single row. */
+  public static String getSelectByKeyStatement(Class<?> cls, String primaryKey) {
+    return Statements.of(cls)
+        .selectsByKey
+        .computeIfAbsent(
+            primaryKey, pk -> getSelectFromStatement(cls, pk) + " WHERE " + pk + " = ?");
+  }
+
+  /** {@code DELETE FROM <table> WHERE <primaryKey> = ?}. */
+  public static String getDeleteStatement(Class<?> cls, String primaryKey) {
+    return Statements.of(cls)
+        .deletes
+        .computeIfAbsent(
+            primaryKey,
+            pk -> "DELETE FROM " + EntityMetadata.of(cls).tableName() + " WHERE " + pk + " = ?");
+  }
+
+  /**
+   * {@code DELETE FROM <table> WHERE <column> IN (?,...)} for {@code count} keys, or a row-value
+   * {@code (<a>,<b>) IN ((?,?),...)} predicate when {@code columns} names a composite key.
+   */
+  public static String getDeleteByKeysStatement(Class<?> cls, List<String> columns, int count) {
+    StringBuilder sql =
+        new StringBuilder("DELETE FROM ").append(EntityMetadata.of(cls).tableName());
+    return appendInPredicate(sql.append(" WHERE "), columns, count).toString();
+  }
+
+  /** {@code SELECT ... WHERE <primaryKey> IN (?,...)} for loading {@code count} rows at once. */
+  public static String getSelectByKeysStatement(Class<?> cls, String primaryKey, int count) {
+    StringBuilder sql = new StringBuilder(getSelectFromStatement(cls, primaryKey));
+    return appendInPredicate(sql.append(" WHERE "), List.of(primaryKey), count).toString();
+  }
+
+  /**
+   * {@code SELECT ... WHERE <primaryKey> = ANY(?)} or the like, binding every key as one array;
+   * null when {@code dialect} cannot bind arrays, see {@link Dialect#anyOf(String)}.
+   */
+  public static String getSelectByKeyArrayStatement(
+      Class<?> cls, String primaryKey, Dialect dialect) {
+    String predicate = dialect.anyOf(primaryKey);
+    return predicate == null
+        ? null
+        : getSelectFromStatement(cls, primaryKey) + " WHERE " + predicate;
   }
 
-  private static String deriveNameForSelectClause(Method m, Class<?> cls) {
-    Optional<Named> namedOption = getAnnotation(m, cls, Named.class);
-    Optional<Ref> refOption = getAnnotation(m, cls, Ref.class);
+  /**
+   * {@code DELETE ... WHERE <column> = ANY(?)} or the like, binding every key as one array; null
+   * when {@code dialect} cannot bind arrays.
+   */
+  public static String getDeleteByKeyArrayStatement(Class<?> cls, String column, Dialect dialect) {
+    String predicate = dialect.anyOf(column);
+    return predicate == null
+        ? null
+        : "DELETE FROM " + EntityMetadata.of(cls).tableName() + " WHERE " + predicate;
+  }
 
-    if (namedOption.isPresent()) {
-      if (refOption.isPresent()) {
-        return namedOption.get().value();
+  /**
+   * Number of placeholders to render for an {@code IN} list of {@code count} values: the next power
+   * of two, or {@code max} when that is smaller. Padding lists to these sizes, by repeating the
+   * last value, keeps the number of distinct statements, and thus of cached plans, logarithmic.
+   */
+  public static int bucketSize(int count, int max) {
+    if (count < 1 || max < 1) {
+      throw new IllegalArgumentException(
+          String.format("IN list sizes must be positive, got %d of at most %d", count, max));
+    }
+    if (count >= max) {
+      return max;
+    }
+    int bucket = Integer.highestOneBit(count);
+    return bucket == count ? count : Math.min(bucket << 1, max);
+  }
+
+  private static StringBuilder appendInPredicate(
+      StringBuilder sql, List<String> columns, int count) {
+    int width = columns.size();
+    if (width == 1) {
+      sql.append(columns.get(0));
+    } else {
+      sql.append('(').append(String.join(",", columns)).append(')');
+    }
+    sql.append(" IN (");
+    String tuple = width == 1 ? "?" : "(" + "?,".repeat(width - 1) + "?)";
+    for (int i = 0; i < count; i++) {
+      sql.append(i == 0 ? "" : ",").append(tuple);
+    }
+    return sql.append(')');
+  }
+
+  /**
+   * Statement text cached per entity class. Insert and update text depends only on which
+   * {@code @Ref} columns are present, so it is keyed by that shape; an entity whose reference or
+   * primary key names differ from the declared ones gets freshly built text instead.
+   */
+  private static final class Statements {
+    static final int INSERT_CLAUSE = 0;
+    static final int UPDATE_CLAUSE = 1;
+    static final int INSERT = 2;
+    static final int UPDATE = 3;
+
+    private static final ClassValue<Statements> CACHE =
+        new ClassValue<>() {
+          @Override
+          protected Statements computeValue(Class<?> type) {
+            return new Statements(EntityMetadata.of(type));
+          }
+        };
+
+    private final EntityMetadata metadata;
+    private final List<EntityMetadata.Property> columns;
+    private final String[] declaredNames;
+    private final boolean shapeFits;
+    private static final int MAX_PARTIAL_TEXTS = 1024;
+
+    /** Key of {@link #selects} for statements without a leading primary key column. */
+    static final String NO_KEY = "";
+
+    private final Map<Long, String> texts = new ConcurrentHashMap<>();
+    private final LruCache<String, String> partialTexts = new LruCache<>(MAX_PARTIAL_TEXTS);
+    private final LruCache<UpsertShape, String> upsertTexts = new LruCache<>(MAX_PARTIAL_TEXTS);
+    final Map<String, String> selects = new ConcurrentHashMap<>();
+    final Map<String, String> joinedSelects = new ConcurrentHashMap<>();
+    final Map<String, String> selectsByKey = new ConcurrentHashMap<>();
+    final Map<String, String> deletes = new ConcurrentHashMap<>();
+
+    private Statements(EntityMetadata metadata) {
+      this.metadata = metadata;
+      this.columns = metadata.columns();
+      this.declaredNames = new String[columns.size()];
+      for (int i = 0; i < declaredNames.length; i++) {
+        var p = columns.get(i);
+        declaredNames[i] =
+            p.named() != null
+                ? p.named().value()
+                : p.ref() != null ? getPrimaryKey(p.type()).orElse(null) : p.defaultColumn();
+      }
+      this.shapeFits = columns.size() < Long.SIZE - 2;
+    }
+
+    static Statements of(Class<?> type) {
+      return CACHE.get(type);
+    }
+
+    SqlClause bind(Persistable entity, int kind) throws ReflectiveOperationException {
+      boolean update = kind == UPDATE_CLAUSE || kind == UPDATE;
+      Object[] values = new Object[columns.size() + (update ? 1 : 0)];
+      String[] names = new String[columns.size()];
+      int count = 0;
+      long shape = 0;
+      boolean cacheable = shapeFits;
+      for (int i = 0; i < names.length; i++) {
+        var p = columns.get(i);
+        Object value = p.get(entity);
+        var derivedName = deriveName(p, value);
+        if (derivedName != null) {
+          cacheable &= derivedName.equals(declaredNames[i]);
+          shape |= 1L << i;
+          names[count] = derivedName;
+          values[count++] = deriveValue(p, value);
+        }
+      }
+
+      String keyName = null;
+      if (update) {
+        Pair<String, Long> primaryKey = entity.getRefs().primaryKey();
+        keyName = primaryKey.getKey();
+        cacheable &= metadata.primaryKey().map(keyName::equals).orElse(false);
+        values[count++] = primaryKey.getValue();
+      }
+      values = count == values.length ? values : Arrays.copyOf(values, count);
+
+      String text;
+      if (cacheable) {
+        final int size = update ? count - 1 : count;
+        final String pk = keyName;
+        text = texts.computeIfAbsent(shape << 2 | kind, k -> render(kind, names, size, pk));
       } else {
-        return namedOption.get().value() + " as \"" + camelToSnake(m.getName().substring(3)) + "\"";
+        text = render(kind, names, update ? count - 1 : count, keyName);
       }
+      return new SqlClause(text, values);
     }
-    if (refOption.isPresent()) {
-      Optional<String> result = getPrimaryKey(m.getReturnType());
-      return result.orElseGet(() -> camelToSnake(m.getName().substring(3)) + "_id");
+
+    Map<String, Object> columnValues(Persistable entity) throws ReflectiveOperationException {
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (EntityMetadata.Property p : columns) {
+        Object value = p.get(entity);
+        var derivedName = deriveName(p, value);
+        if (derivedName != null) {
+          values.put(derivedName, deriveValue(p, value));
+        }
+      }
+      return values;
     }
 
-    String name = m.getName().substring(3);
-    name = camelToSnake(name);
-    return name;
+    SqlClause bindPartial(Persistable entity, Collection<String> requested)
+        throws ReflectiveOperationException {
+      Map<String, Object> all = columnValues(entity);
+      for (String column : requested) {
+        if (!all.containsKey(column)) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "Column '%s' is not written by updates of %s",
+                  column, entity.getClass().getName()));
+        }
+      }
+      String[] names = new String[requested.size()];
+      Object[] values = new Object[requested.size() + 1];
+      int count = 0;
+      for (Map.Entry<String, Object> entry : all.entrySet()) {
+        if (requested.contains(entry.getKey())) {
+          names[count] = entry.getKey();
+          values[count++] = entry.getValue();
+        }
+      }
+      Pair<String, Long> primaryKey = entity.getRefs().primaryKey();
+      values[count] = primaryKey.getValue();
+      values = count + 1 == values.length ? values : Arrays.copyOf(values, count + 1);
+
+      String key =
+          primaryKey.getKey() + "|" + String.join(",", Arrays.asList(names).subList(0, count));
+      String text = partialTexts.get(key);
+      if (text == null) {
+        text = render(UPDATE, names, count, primaryKey.getKey());
+        partialTexts.put(key, text);
+      }
+      return new SqlClause(text, values);
+    }
+
+    SqlClause bindUpsert(Persistable entity, Dialect dialect) throws ReflectiveOperationException {
+      Map<String, Object> all = columnValues(entity);
+      Pair<String, Long> primaryKey = entity.getRefs().primaryKey();
+      all.remove(primaryKey.getKey());
+      Object[] values = new Object[all.size() + 1];
+      values[0] = primaryKey.getValue();
+      int count = 1;
+      for (Object value : all.values()) {
+        values[count++] = value;
+      }
+
+      var shape = new UpsertShape(dialect, primaryKey.getKey(), List.copyOf(all.keySet()));
+      String text = upsertTexts.get(shape);
+      if (text == null) {
+        text = dialect.upsert(metadata.tableName(), List.of(shape.key()), shape.columns());
+        upsertTexts.put(shape, text);
+      }
+      return new SqlClause(text, values);
+    }
+
+    private record UpsertShape(Dialect dialect, String key, List<String> columns) {}
+
+    private String render(int kind, String[] names, int size, String keyName) {
+      StringBuilder sql = new StringBuilder();
+      switch (kind) {
+        case INSERT, INSERT_CLAUSE -> {
+          if (kind == INSERT) {
+            sql.append("INSERT INTO ").append(metadata.tableName()).append(' ');
+          }
+          sql.append('(');
+          for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? "" : ",").append(names[i]);
+          }
+          sql.append(") VALUES (");
+          for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+          }
+          sql.append(')');
+        }
+        default -> {
+          if (kind == UPDATE) {
+            sql.append("UPDATE ").append(metadata.tableName()).append(' ');
+          }
+          sql.append("SET");
+          for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? " " : ",").append(names[i]).append("=?");
+          }
+          sql.append(" WHERE ").append(keyName).append("=?");
+        }
+      }
+      return sql.toString();
+    }
+  }
+
+  private static String deriveName(EntityMetadata.Property p, Object value) {
+    if (p.named() != null) {
+      return p.named().value();
+    }
+
+    if (p.ref() != null) {
+      Persistable refObj = (Persistable) value;
+      if (refObj != null && refObj.getRefs() != Key.None) {
+        return refObj.getRefs().primaryKey().getKey();
+      } else {
+        return null;
+      }
+    }
+
+    return p.defaultColumn();
+  }
+
+  private static Object deriveValue(EntityMetadata.Property p, Object value) {
+    if (p.ref() != null) {
+      return ((Persistable) value).getRefs().primaryKey().getValue();
+    }
+    return value;
   }
 
   private static Optional<Field> getFieldForMethod(Method m, Class<?> cls) {
-    try {
-      Field field = cls.getDeclaredField(toLowerCamelCase(m.getName()));
-      return Optional.of(field);
-    } catch (NoSuchFieldException e) {
-      return Optional.empty();
+    String fieldName = EntityMetadata.toLowerCamelCase(m.getName());
+    for (Field field : cls.getDeclaredFields()) {
+      if (field.getName().equals(fieldName)) {
+        return Optional.of(field);
+      }
     }
+    return Optional.empty();
   }
 
   public static Optional<String> getPrimaryKey(Class<?> cls) {
@@ -200,20 +531,4 @@ public final class WithSql {
     }
     return Optional.empty();
   }
-
-  private static String toLowerCamelCase(String methodName) {
-    StringBuilder b = new StringBuilder(methodName.substring(3));
-    var result = b.replace(0, 1, (b.charAt(0) + "").toLowerCase());
-    return result.toString();
-  }
-
-  private static String camelToSnake(String str) {
-    // Regular Expression
-    String regex = "([a-z])([A-Z]+)";
-    // Replacement string
-    String replacement = "$1_$2";
-    str = str.replaceAll(regex, replacement).toLowerCase();
-
-    return str;
-  }
 }
@@ -1,6 +1,5 @@
 package org.viablespark.persistence.validation;
 
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
@@ -16,12 +15,9 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import javax.sql.DataSource;
-import org.viablespark.persistence.Key;
 import org.viablespark.persistence.Persistable;
-import org.viablespark.persistence.RefValue;
-import org.viablespark.persistence.dsl.Named;
+import org.viablespark.persistence.dsl.EntityMetadata;
 import org.viablespark.persistence.dsl.Ref;
-import org.viablespark.persistence.dsl.Skip;
 import org.viablespark.persistence.dsl.WithSql;
 
 /**
@@ -116,48 +112,22 @@ public final class SchemaValidator {
 
   private static Set<String> collectExpectedColumns(Class<? extends Persistable> entityClass) {
     Set<String> columns = new LinkedHashSet<>();
-    for (Method method : entityClass.getDeclaredMethods()) {
-      if (!method.getName().startsWith("get")) {
-        continue;
-      }
-      if (WithSql.getAnnotation(method, entityClass, Skip.class).isPresent()) {
-        continue;
-      }
-      if (method.getReturnType().equals(Key.class)) {
+    for (EntityMetadata.Property property : EntityMetadata.of(entityClass).properties()) {
+      if (property.isSkipped() || property.isKey()) {
         continue;
       }
 
-      Optional<Ref> refAnnotation = WithSql.getAnnotation(method, entityClass, Ref.class);
-      Class<?> returnType = method.getReturnType();
-
-      if (RefValue.class.equals(returnType)) {
-        if (refAnnotation.isPresent()) {
-          Ref ref = refAnnotation.get();
-          if (!ref.value().isBlank()) {
-            columns.add(ref.value());
-          }
+      Ref ref = property.ref();
+      if (property.isRefValue()) {
+        if (ref != null && !ref.value().isBlank()) {
+          columns.add(ref.value());
         }
         continue;
       }
 
-      if (refAnnotation.isPresent()) {
-        String columnName =
-            WithSql.getAnnotation(method, entityClass, Named.class)
-                .map(Named::value)
-                .orElseGet(() -> WithSql.getPrimaryKey(returnType).orElse(null));
-        if (columnName != null && !columnName.isBlank()) {
-          columns.add(columnName);
-        }
-        continue;
-      }
-
-      Optional<Named> named = WithSql.getAnnotation(method, entityClass, Named.class);
-      if (named.isPresent()) {
-        if (!named.get().value().isBlank()) {
-          columns.add(named.get().value());
-        }
-      } else {
-        columns.add(camelToSnake(method.getName().substring(3)));
+      String columnName = property.column().orElse(null);
+      if (columnName != null && !columnName.isBlank()) {
+        columns.add(columnName);
       }
     }
     return columns;
@@ -199,16 +169,6 @@ public final class SchemaValidator {
   }
 
   private static String resolveTableName(Class<? extends Persistable> entityClass) {
-    if (entityClass.isAnnotationPresent(Named.class)) {
-      return entityClass.getAnnotation(Named.class).value();
-    }
-    return camelToSnake(entityClass.getSimpleName());
-  }
-
-  private static String camelToSnake(String value) {
-    if (value == null || value.isEmpty()) {
-      return value;
-    }
-    return value.replaceAll("([a-z])([A-Z]+)", "$1_$2").toLowerCase(Locale.ROOT);
+    return EntityMetadata.of(entityClass).tableName();
   }
 }
@@ -1,6 +1,7 @@
 package org.viablespark.persistence.validation;
 
 import java.util.Objects;
+import org.viablespark.persistence.dsl.ParsedSql;
 import org.viablespark.persistence.dsl.SqlQuery;
 
 /**
@@ -15,27 +16,25 @@ public final class SqlQueryValidator {
 
   public static void assertPlaceholderCount(SqlQuery query) {
     Objects.requireNonNull(query, "SqlQuery must not be null");
-    String sql = query.sql();
+    assertPlaceholderCount(query.sql(), query.values());
+  }
+
+  /** Same check for already rendered SQL and values. */
+  public static void assertPlaceholderCount(String sql, Object[] values) {
     int placeholderCount = countPlaceholders(sql);
-    int valueCount = query.values().length;
-    if (placeholderCount != valueCount) {
+    if (placeholderCount != values.length) {
       throw new IllegalArgumentException(
           String.format(
               "Placeholder mismatch for SQL [%s]: expected %d values but found %d",
-              sql, placeholderCount, valueCount));
+              sql, placeholderCount, values.length));
     }
   }
 
+  /** Placeholders outside literals and comments; see {@link ParsedSql}. */
   static int countPlaceholders(String sql) {
     if (sql == null || sql.isEmpty()) {
       return 0;
     }
-    int count = 0;
-    for (int i = 0; i < sql.length(); i++) {
-      if (sql.charAt(i) == '?') {
-        count++;
-      }
-    }
-    return count;
+    return ParsedSql.of(sql).parameterCount();
   }
 }
@@ -21,8 +21,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.viablespark.persistence.dsl.Named;
 import org.viablespark.persistence.dsl.PrimaryKey;
 import org.viablespark.persistence.dsl.SqlQuery;
@@ -69,6 +69,19 @@ class BaseRepositoryAdvancedTest {
     assertNotNull(thrown.getCause());
   }
 
+  @Test
+  void rejectsBatchInsertWithMissingGeneratedKeys() {
+    TestEntity first = new TestEntity();
+    first.setName("First");
+    TestEntity second = new TestEntity();
+    second.setName("Second");
+
+    IllegalStateException thrown =
+        assertThrows(IllegalStateException.class, () -> repository.saveAll(List.of(first, second)));
+    assertEquals(
+        "Expected 2 generated keys for batch insert but driver returned 0", thrown.getMessage());
+  }
+
   @Test
   void handlesGetWithDatabaseException() {
     when(mockJdbc.query(anyString(), any(PersistableRowMapper.class), any(Object[].class)))
@@ -97,7 +110,7 @@ class BaseRepositoryAdvancedTest {
     SqlQuery query = SqlQuery.raw("SELECT * FROM test_entity");
     PersistableMapper<TestEntity> mapper = PersistableRowMapper.of(TestEntity.class);
 
-    when(mockJdbc.queryForRowSet(anyString(), any(Object[].class)))
+    when(mockJdbc.query(anyString(), any(RowMapper.class), any(Object[].class)))
         .thenThrow(new DataAccessException("Query failed") {});
 
     RuntimeException thrown =
@@ -181,9 +194,8 @@ class BaseRepositoryAdvancedTest {
     SqlQuery query = SqlQuery.raw("SELECT * FROM test_entity");
     PersistableMapper<TestEntity> mapper = PersistableRowMapper.of(TestEntity.class);
 
-    SqlRowSet mockRowSet = mock(SqlRowSet.class);
-    when(mockRowSet.next()).thenReturn(false);
-    when(mockJdbc.queryForRowSet(anyString(), any(Object[].class))).thenReturn(mockRowSet);
+    when(mockJdbc.query(anyString(), any(RowMapper.class), any(Object[].class)))
+        .thenReturn(List.of());
 
     List<TestEntity> results = repository.query(query, mapper);
     assertTrue(results.isEmpty());
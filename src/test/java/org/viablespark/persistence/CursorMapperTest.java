@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+class CursorMapperTest {
+
+  @Test
+  void wrapsEachCursorOnceForRowSetMappers() throws SQLException {
+    List<SqlRowSet> seen = new ArrayList<>();
+    List<Integer> rowNumbers = new ArrayList<>();
+    PersistableMapper<Contractor> mapper =
+        (rows, rowNum) -> {
+          seen.add(rows);
+          rowNumbers.add(rowNum);
+          return new Contractor();
+        };
+    var cursorMapper = new CursorMapper<>(mapper);
+
+    ResultSet first = resultSet();
+    cursorMapper.mapRow(first, 0);
+    cursorMapper.mapRow(first, 1);
+    cursorMapper.mapRow(resultSet(), 0);
+
+    assertSame(seen.get(0), seen.get(1));
+    assertNotSame(seen.get(1), seen.get(2));
+    assertEquals(List.of(1, 2, 1), rowNumbers);
+  }
+
+  @Test
+  void passesLiveResultSetToResultSetMappers() throws SQLException {
+    ResultSet rs = resultSet();
+    when(rs.getLong(1)).thenReturn(5L);
+
+    var contractor = new CursorMapper<>(PersistableRowMapper.of(Contractor.class)).mapRow(rs, 0);
+
+    assertEquals(5L, contractor.getRefs().primaryKey().getValue());
+  }
+
+  private static ResultSet resultSet() throws SQLException {
+    ResultSet rs = mock(ResultSet.class);
+    ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+    when(rs.getMetaData()).thenReturn(metaData);
+    when(metaData.getColumnCount()).thenReturn(1);
+    when(metaData.getColumnLabel(1)).thenReturn("sc_key");
+    return rs;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class DirtyTrackerTest {
+
+  @Test
+  void detectsValuesChangedInPlace() {
+    DirtyTracker tracker = new DirtyTracker();
+    Note note = new Note();
+    byte[] data = {1, 2, 3};
+    Timestamp updated = new Timestamp(1_000L);
+    Map<String, Object> columns = new HashMap<>();
+    columns.put("data", data);
+    columns.put("updated", updated);
+    columns.put("note", "text");
+    tracker.snapshot(note, columns);
+
+    assertEquals(List.of(), tracker.changedColumns(note, columns));
+
+    data[0] = 9;
+    updated.setNanos(5);
+    assertEquals(
+        List.of("data", "updated"),
+        tracker.changedColumns(note, columns).stream().sorted().toList());
+  }
+
+  @Test
+  void reportsUntrackedEntities() {
+    assertNull(new DirtyTracker().changedColumns(new Note(), Map.of()));
+  }
+}
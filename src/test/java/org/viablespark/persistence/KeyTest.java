@@ -16,6 +16,10 @@ package org.viablespark.persistence;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.util.AssertionErrors.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -164,4 +168,54 @@ public class KeyTest {
     Long third = key.getKey("third");
     assertNotEquals(key.addIfValid("third", 34443L).getKey("third"), third);
   }
+
+  @Test
+  public void testSingleColumnKey() {
+    Key single = Key.of("n_key", 5L);
+    assertNotEquals(single.hashCode(), Key.of("n_key", 6L).hashCode());
+    assertEquals(Pair.of("n_key", 5L), single.primaryKey());
+    assertEquals(single.primaryKey(), Pair.of("n_key", 5L));
+    assertEquals(single.primaryKey().hashCode(), Pair.of("n_key", 5L).hashCode());
+
+    single.primaryKey().setValue(6L);
+    assertEquals(Key.of("n_key", 6L), single);
+    assertEquals(Key.of("n_key", 6L).hashCode(), single.hashCode());
+    single.getKeys().iterator().next().setValue(null);
+    assertNull(single.getKey("n_key"));
+
+    single.add("n_key", 7L).add("other", 8L);
+    assertEquals(2, single.count());
+    assertEquals(Pair.of("n_key", 7L), single.getAt(0));
+    assertEquals(new Key().add("n_key", 7L).add("other", 8L), single);
+    assertEquals(new Key().add("n_key", 7L).add("other", 8L).hashCode(), single.hashCode());
+    assertNotEquals(new Key().add("other", 8L).add("n_key", 7L), single);
+  }
+
+  @Test
+  public void testSerializationRoundTrip() throws Exception {
+    Key single = Key.of("n_key", 5L);
+    Key composite = new Key().add("n_key", 7L).add("other", 8L);
+    Key absent = new Key().add("n_key", (Long) null);
+
+    assertEquals(single, roundTrip(single));
+    assertEquals("n_key", roundTrip(single).primaryKey().getKey());
+    assertEquals(single.hashCode(), roundTrip(single).hashCode());
+    assertEquals(composite, roundTrip(composite));
+    assertEquals(
+        List.of("n_key", "other"),
+        roundTrip(composite).getKeys().stream().map(Pair::getKey).toList());
+    assertNull(roundTrip(absent).getKey("n_key"));
+    assertEquals(0, roundTrip(Key.None).count());
+  }
+
+  private static Key roundTrip(Key key) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(key);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (Key) in.readObject();
+    }
+  }
 }
@@ -13,20 +13,41 @@
 
 package org.viablespark.persistence;
 
+import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.viablespark.persistence.cache.CacheStats;
+import org.viablespark.persistence.cache.QueryCache;
+import org.viablespark.persistence.cache.SegmentedLruCache;
+import org.viablespark.persistence.dsl.CompiledQuery;
+import org.viablespark.persistence.dsl.Dialect;
 import org.viablespark.persistence.dsl.SqlQuery;
 
 public class NoteRepositoryTest {
@@ -70,6 +91,32 @@ public class NoteRepositoryTest {
     assertTrue(found.size() > 1);
   }
 
+  @Test
+  public void testCompiledQueryRunsWithNewValues() throws Exception {
+    CompiledQuery byProgress =
+        new SqlQuery().where("progress_id = ?", 0).primaryKey("n_key").compile();
+    assertTrue(repository.queryEntity(byProgress, Note.class).isEmpty());
+    assertEquals(2, repository.queryEntity(byProgress.bind(1), Note.class).size());
+    try (var notes = repository.streamEntity(byProgress.bind(1), Note.class, 10)) {
+      assertEquals(2, notes.count());
+    }
+
+    CompiledQuery named =
+        new SqlQuery()
+            .where("progress_id = :progress AND (note = :content OR additional = :content)")
+            .bind("progress", 1)
+            .bind("content", "note2")
+            .primaryKey("n_key")
+            .compile();
+    assertEquals(1, repository.queryEntity(named, Note.class).size());
+    assertEquals(
+        "note1",
+        repository
+            .queryEntity(named.bind(Map.of("progress", 1, "content", "additional")), Note.class)
+            .get(0)
+            .getNoteContent());
+  }
+
   @Test
   public void testQueryOnNotePersistable() throws Exception {
     var repo = new BaseRepository<NotePersistable>(new JdbcTemplate(db)) {};
@@ -81,6 +128,16 @@ public class NoteRepositoryTest {
     assertTrue(plainFound.size() > 1);
   }
 
+  @Test
+  public void testQueryEntityWithoutPrimaryKey() throws Exception {
+    var repo = new BaseRepository<NotePersistable>(new JdbcTemplate(db)) {};
+
+    var found = repo.queryEntity(new SqlQuery().where("progress_id = ?", 1), NotePersistable.class);
+
+    assertEquals(2, found.size());
+    assertEquals(Key.None, found.get(0).getRefs());
+  }
+
   @Test
   public void testUsingPersistableInAMap() throws Exception {
     Map<Persistable, Key> map = new HashMap<>();
@@ -89,6 +146,259 @@ public class NoteRepositoryTest {
     assertTrue(map.containsKey(note));
   }
 
+  @Test
+  public void testSaveAllInsertsInBatchesAndAssignsKeys() throws Exception {
+    List<Note> notes = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      var note = new Note();
+      note.setNoteContent("batch" + i);
+      note.setProgress(new Progress());
+      note.getProgress().setRefs(Key.of("id", 1L));
+      notes.add(note);
+    }
+    var existing = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    existing.setNoteContent("updated");
+    notes.add(existing);
+
+    var keys = repository.saveAll(notes, 2);
+
+    assertEquals(6, keys.size());
+    assertEquals(
+        Set.of(1L, 3L, 4L, 5L, 6L, 7L),
+        keys.stream().map(k -> k.primaryKey().getValue()).collect(toSet()));
+    for (int i = 0; i < 5; i++) {
+      var saved = repository.get(keys.get(i), Note.class).orElseThrow();
+      assertEquals("batch" + i, saved.getNoteContent());
+    }
+    assertEquals(
+        "updated", repository.get(Key.of("n_key", 1L), Note.class).orElseThrow().getNoteContent());
+  }
+
+  @Test
+  public void testUpdateAllReportsUnmatchedEntities() throws Exception {
+    var first = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    var second = repository.get(Key.of("n_key", 2L), Note.class).orElseThrow();
+    first.setNoteContent("first");
+    second.setNoteContent("second");
+    var ghost = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    ghost.setRefs(Key.of("n_key", 99L));
+
+    var result = repository.updateAll(List.of(first, ghost, second), 2);
+
+    assertEquals(List.of(1, 0, 1), result.rowCounts());
+    assertEquals(List.of(ghost), result.unmatched());
+    assertEquals(2, result.totalRows());
+    assertEquals(
+        "second", repository.get(Key.of("n_key", 2L), Note.class).orElseThrow().getNoteContent());
+  }
+
+  @Test
+  public void testDeleteAllInChunks() throws Exception {
+    var notes =
+        repository.queryEntity(
+            new SqlQuery().where("progress_id = ?", 1).primaryKey("n_key"), Note.class);
+
+    assertEquals(notes.size(), repository.deleteAll(notes, 1));
+    assertEquals(0, repository.deleteByKeys(Note.class, List.of(Key.of("n_key", 1L))));
+    assertTrue(repository.get(Key.of("n_key", 2L), Note.class).isEmpty());
+  }
+
+  @Test
+  public void testGetAllKeepsKeyOrderAndSkipsMissingRows() throws Exception {
+    var keys = List.of(Key.of("n_key", 2L), Key.of("n_key", 99L), Key.of("n_key", 1L));
+
+    var found = repository.getAll(keys, Note.class);
+
+    assertEquals(List.of(keys.get(0), keys.get(2)), new ArrayList<>(found.keySet()));
+    assertEquals("note2", found.get(keys.get(0)).getNoteContent());
+    assertEquals(keys.get(2), found.get(keys.get(2)).getRefs());
+    assertEquals(
+        List.of("note2", "note1"),
+        repository.getAllOrdered(keys, Note.class).stream().map(Note::getNoteContent).toList());
+  }
+
+  @Test
+  public void testGetAllRejectsCompositeKeys() {
+    var keys = List.of(Key.of("n_key", 1L), Key.of("n_key", 2L).add("progress_id", 1L));
+
+    assertThrows(IllegalArgumentException.class, () -> repository.getAll(keys, Note.class));
+  }
+
+  @Test
+  public void testWhereIn() throws Exception {
+    var notes =
+        repository.queryEntity(
+            new SqlQuery()
+                .whereIn("n_key", List.of(99L, 1L, 2L))
+                .orderBy("n_key")
+                .primaryKey("n_key"),
+            Note.class);
+    assertEquals(List.of("note1", "note2"), notes.stream().map(Note::getNoteContent).toList());
+  }
+
+  @Test
+  public void testArrayBoundKeys() throws Exception {
+    repository.setDialect(Dialect.HSQLDB);
+    repository.setArrayBindingThreshold(2);
+    var keys = List.of(Key.of("n_key", 2L), Key.of("n_key", 99L), Key.of("n_key", 1L));
+    assertEquals(
+        List.of("note2", "note1"),
+        repository.getAllOrdered(keys, Note.class).stream().map(Note::getNoteContent).toList());
+
+    var notes =
+        repository.queryEntity(
+            new SqlQuery()
+                .whereAnyOf("n_key", new long[] {1L, 2L, 99L}, repository.getDialect())
+                .orderBy("n_key")
+                .primaryKey("n_key"),
+            Note.class);
+    assertEquals(2, notes.size());
+
+    assertEquals(2, repository.deleteByKeys(Note.class, keys));
+    assertTrue(repository.getAll(keys, Note.class).isEmpty());
+  }
+
+  @Test
+  public void testStreamEntity() throws Exception {
+    try (var notes =
+        repository.streamEntity(
+            new SqlQuery().where("progress_id = ?", 1).orderBy("n_key").primaryKey("n_key"),
+            Note.class,
+            1)) {
+      assertEquals(List.of("note1", "note2"), notes.map(Note::getNoteContent).limit(2).toList());
+    }
+  }
+
+  @Test
+  public void testKeysetPagesWithContinuationToken() throws Exception {
+    List<String> contents = new ArrayList<>();
+    String token = null;
+    do {
+      var page =
+          repository.queryEntity(
+              new SqlQuery()
+                  .where("progress_id = ?", 1)
+                  .afterToken(token, List.of("n_key"))
+                  .limit(1),
+              Note.class);
+      if (page.isEmpty()) {
+        break;
+      }
+      page.forEach(n -> contents.add(n.getNoteContent()));
+      token = SqlQuery.continuationToken(page.get(page.size() - 1).getRefs());
+    } while (true);
+
+    assertEquals(List.of("note1", "note2"), contents);
+  }
+
+  @Test
+  public void testDirtyTrackingWritesOnlyChangedColumns() throws Exception {
+    var jdbc = spy(new JdbcTemplate(db));
+    var tracked = new NoteRepository(jdbc);
+    tracked.setDirtyTracking(true);
+
+    var note = tracked.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    tracked.save(note);
+    verify(jdbc, never()).update(anyString(), any(Object[].class));
+
+    note.setExtra("changed");
+    tracked.save(note);
+    verify(jdbc).update("UPDATE note SET additional=? WHERE n_key=?", "changed", 1L);
+
+    tracked.save(note);
+    verify(jdbc, times(1)).update(anyString(), any(Object[].class));
+
+    note.setNoteContent("explicit");
+    tracked.update(note, "note");
+    verify(jdbc).update("UPDATE note SET note=? WHERE n_key=?", "explicit", 1L);
+    assertEquals(
+        "explicit", repository.get(Key.of("n_key", 1L), Note.class).orElseThrow().getNoteContent());
+  }
+
+  @Test
+  public void testUpsertUpdatesExistingRowsAndInsertsMissingOnes() throws Exception {
+    var existing = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    existing.setNoteContent("merged");
+    repository.upsert(existing);
+    assertEquals(
+        "merged", repository.get(Key.of("n_key", 1L), Note.class).orElseThrow().getNoteContent());
+
+    List<Note> notes = new ArrayList<>();
+    for (long id : new long[] {50L, 51L}) {
+      var note = new Note();
+      note.setRefs(Key.of("n_key", id));
+      note.setNoteContent("upserted" + id);
+      note.setProgress(new Progress());
+      note.getProgress().setRefs(Key.of("id", 1L));
+      notes.add(note);
+    }
+    existing.setNoteContent("merged again");
+    notes.add(existing);
+    var fresh = new Note();
+    fresh.setNoteContent("fresh");
+    fresh.setProgress(existing.getProgress());
+    notes.add(fresh);
+
+    var keys = repository.upsertAll(notes, 2);
+
+    assertEquals(4, keys.size());
+    assertEquals(Key.of("n_key", 50L), keys.get(0));
+    assertEquals(
+        "upserted51",
+        repository.get(Key.of("n_key", 51L), Note.class).orElseThrow().getNoteContent());
+    assertEquals(
+        "merged again",
+        repository.get(Key.of("n_key", 1L), Note.class).orElseThrow().getNoteContent());
+    assertFalse(fresh.isNew());
+    assertEquals("fresh", repository.get(keys.get(3), Note.class).orElseThrow().getNoteContent());
+  }
+
+  @Test
+  public void testEntityCacheServesGetsUntilTheEntityIsWritten() throws Exception {
+    var jdbc = spy(new JdbcTemplate(db));
+    var cached = new NoteRepository(jdbc);
+    var cache = new SegmentedLruCache(100, Duration.ofMinutes(1));
+    cached.setEntityCache(cache);
+
+    var note = cached.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    var again = cached.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    assertNotSame(note, again);
+    assertEquals(note.getNoteContent(), again.getNoteContent());
+    verify(jdbc, times(1))
+        .query(anyString(), ArgumentMatchers.<RowMapper<Note>>any(), any(Object[].class));
+
+    again.setNoteContent("written");
+    cached.save(again);
+    assertEquals(
+        "written", cached.get(Key.of("n_key", 1L), Note.class).orElseThrow().getNoteContent());
+    assertEquals(new CacheStats(1, 2, 0, 1), cache.stats());
+
+    cached.delete(again);
+    assertFalse(cached.get(Key.of("n_key", 1L), Note.class).isPresent());
+  }
+
+  @Test
+  public void testQueryCacheIsInvalidatedByWritesToTheTable() throws Exception {
+    var jdbc = spy(new JdbcTemplate(db));
+    var cached = new NoteRepository(jdbc);
+    cached.setQueryCache(new QueryCache(1000, Duration.ofMinutes(1)));
+    SqlQuery query = new SqlQuery().where("progress_id = ?", 1).primaryKey("n_key");
+
+    var first = cached.queryEntity(query, Note.class);
+    var second = cached.queryEntity(query, Note.class);
+    assertEquals(2, second.size());
+    assertNotSame(first.get(0), second.get(0));
+    verify(jdbc, times(1))
+        .query(anyString(), ArgumentMatchers.<RowMapper<Note>>any(), any(Object[].class));
+
+    second.get(0).setNoteContent("written");
+    cached.save(second.get(0));
+    var third = cached.queryEntity(query, Note.class);
+    verify(jdbc, times(2))
+        .query(anyString(), ArgumentMatchers.<RowMapper<Note>>any(), any(Object[].class));
+    assertTrue(third.stream().anyMatch(n -> "written".equals(n.getNoteContent())));
+  }
+
   @BeforeEach
   public void setUp() {
     // creates an HSQL in-memory database populated from default scripts
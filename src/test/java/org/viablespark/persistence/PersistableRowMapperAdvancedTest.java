@@ -285,6 +285,64 @@ class PersistableRowMapperAdvancedTest {
     assertEquals(LocalDate.of(2024, 1, 15), result.getCreatedDate());
   }
 
+  @Test
+  void resolvesColumnsAgainForResultSetWithDifferentLayout() throws SQLException {
+    var mapper = PersistableRowMapper.of(EntityWithIntegerField.class);
+
+    ResultSet first = mock(ResultSet.class);
+    ResultSetMetaData firstMeta = mock(ResultSetMetaData.class);
+    when(first.getMetaData()).thenReturn(firstMeta);
+    when(firstMeta.getColumnCount()).thenReturn(2);
+    when(firstMeta.getColumnLabel(1)).thenReturn("id");
+    when(firstMeta.getColumnLabel(2)).thenReturn("count");
+    when(first.getLong(1)).thenReturn(1L);
+    when(first.getObject(2)).thenReturn(10);
+
+    ResultSet second = mock(ResultSet.class);
+    ResultSetMetaData secondMeta = mock(ResultSetMetaData.class);
+    when(second.getMetaData()).thenReturn(secondMeta);
+    when(secondMeta.getColumnCount()).thenReturn(2);
+    when(secondMeta.getColumnLabel(1)).thenReturn("COUNT");
+    when(secondMeta.getColumnLabel(2)).thenReturn("ID");
+    when(second.getLong(2)).thenReturn(2L);
+    when(second.getObject(1)).thenReturn(20);
+
+    assertEquals(10, mapper.mapRow(first, 1).getCount());
+    assertEquals(10, mapper.mapRow(first, 2).getCount());
+
+    var remapped = mapper.mapRow(second, 1);
+    assertEquals(20, remapped.getCount());
+    assertEquals(2L, remapped.getRefs().primaryKey().getValue());
+  }
+
+  @Test
+  void mapsNullColumnsToWrappersAndRejectsThemForPrimitives() throws SQLException {
+    var mapper = PersistableRowMapper.of(EntityWithNumbers.class);
+    ResultSet rs = mock(ResultSet.class);
+    ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+
+    when(rs.getMetaData()).thenReturn(metaData);
+    when(metaData.getColumnCount()).thenReturn(3);
+    when(metaData.getColumnLabel(1)).thenReturn("id");
+    when(metaData.getColumnLabel(2)).thenReturn("order_total");
+    when(metaData.getColumnLabel(3)).thenReturn("QUANTITY");
+    when(rs.getLong(1)).thenReturn(7L);
+    when(rs.getLong(2)).thenReturn(0L);
+    when(rs.getInt(3)).thenReturn(3);
+    when(rs.wasNull()).thenReturn(true, false);
+
+    var mapped = mapper.mapRow(rs, 1);
+    assertNull(mapped.getOrderTotal());
+    assertEquals(3, mapped.getQuantity());
+    assertEquals(7L, mapped.getRefs().primaryKey().getValue());
+
+    when(rs.getLong(2)).thenReturn(12L);
+    when(rs.getInt(3)).thenReturn(0);
+    when(rs.wasNull()).thenReturn(true);
+    SQLException thrown = assertThrows(SQLException.class, () -> mapper.mapRow(rs, 2));
+    assertTrue(thrown.getMessage().contains("primitive property 'quantity'"));
+  }
+
   // Test entity classes
   @PrimaryKey("id")
   static class EntityWithBrokenSetter implements Persistable {
@@ -484,4 +542,37 @@ class PersistableRowMapperAdvancedTest {
       this.refs = key;
     }
   }
+
+  @PrimaryKey("id")
+  static class EntityWithNumbers implements Persistable {
+    private Key refs;
+    private Long orderTotal;
+    private int quantity;
+
+    public Long getOrderTotal() {
+      return orderTotal;
+    }
+
+    public void setOrderTotal(Long orderTotal) {
+      this.orderTotal = orderTotal;
+    }
+
+    public int getQuantity() {
+      return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+      this.quantity = quantity;
+    }
+
+    @Override
+    public Key getRefs() {
+      return refs;
+    }
+
+    @Override
+    public void setRefs(Key key) {
+      this.refs = key;
+    }
+  }
 }
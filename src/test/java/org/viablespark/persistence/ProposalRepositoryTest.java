@@ -15,6 +15,9 @@ package org.viablespark.persistence;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
@@ -130,6 +133,46 @@ public class ProposalRepositoryTest {
     assertEquals(2, mapper.getContractors().size());
   }
 
+  @Test
+  public void testFetchRefs() throws Exception {
+    var proposals =
+        repository.queryEntity(
+            new SqlQuery().orderBy("pr_key").primaryKey("pr_key"), Proposal.class);
+    assertEquals(3, proposals.size());
+    assertNull(proposals.get(0).getContractor().getName());
+
+    assertSame(proposals, repository.fetchRefs(proposals, "contractor"));
+
+    assertEquals("Mr Contractor", proposals.get(0).getContractor().getName());
+    assertEquals("ABC Contractor Inc", proposals.get(2).getContractor().getName());
+    assertEquals(Key.of("sc_key", 2L), proposals.get(2).getContractor().getRefs());
+    assertSame(proposals.get(0).getContractor(), proposals.get(1).getContractor());
+    assertThrows(IllegalArgumentException.class, () -> repository.fetchRefs(proposals, "supplier"));
+  }
+
+  @Test
+  public void testFetchJoin() throws Exception {
+    var proposals =
+        repository.queryEntity(
+            new SqlQuery()
+                .where("dist > ?", 0)
+                .orderBy("pr_key")
+                .fetch("contractor")
+                .primaryKey("pr_key"),
+            Proposal.class);
+
+    assertEquals(3, proposals.size());
+    assertEquals("proposal name", proposals.get(0).getPropName());
+    assertEquals(Key.of("pr_key", 3L), proposals.get(2).getRefs());
+    assertEquals("Mr Contractor", proposals.get(0).getContractor().getName());
+    assertEquals("billyboy@gmail.com", proposals.get(2).getContractor().getEmail());
+    assertEquals(Key.of("sc_key", 2L), proposals.get(2).getContractor().getRefs());
+    assertSame(proposals.get(0).getContractor(), proposals.get(1).getContractor());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> repository.queryEntity(new SqlQuery().fetch("tasks"), Proposal.class));
+  }
+
   @Test
   public void testRowSetQuery() {
 
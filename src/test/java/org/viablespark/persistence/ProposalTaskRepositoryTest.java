@@ -16,6 +16,7 @@ package org.viablespark.persistence;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -52,6 +53,23 @@ public class ProposalTaskRepositoryTest {
     keyOption.ifPresent(key -> assertEquals(Key.None, key));
   }
 
+  @Test
+  public void testDeleteByCompositeKeys() {
+    var deleted =
+        repository.deleteByKeys(
+            ProposalTask.class,
+            List.of(
+                Key.of("t_key", 1L).add("pr_key", 1L),
+                Key.of("t_key", 2L).add("pr_key", 1L),
+                Key.of("t_key", 4L).add("pr_key", 1L)),
+            2);
+
+    assertEquals(2, deleted);
+    assertEquals(
+        0,
+        new JdbcTemplate(db).queryForObject("select count(*) from proposal_task", Integer.class));
+  }
+
   @BeforeEach
   public void setUp() {
     // creates an HSQL in-memory database populated from default scripts
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.viablespark.persistence.NoteRepositoryTest.NoteRepository;
+import org.viablespark.persistence.dsl.SqlQuery;
+
+public class UnitOfWorkTest {
+
+  private EmbeddedDatabase db;
+  private JdbcTemplate jdbc;
+  private NoteRepository repository;
+
+  @Test
+  public void testRepeatedGetIsServedFromMemory() {
+    try (UnitOfWork uow = repository.beginUnitOfWork()) {
+      var first = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+      var second = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+      assertSame(first, second);
+      assertEquals(1, uow.size());
+      verify(jdbc, times(1))
+          .query(anyString(), ArgumentMatchers.<RowMapper<Note>>any(), any(Object[].class));
+
+      var all =
+          repository.getAllOrdered(List.of(Key.of("n_key", 2L), Key.of("n_key", 1L)), Note.class);
+      assertSame(first, all.get(1));
+      assertEquals("note2", all.get(0).getNoteContent());
+    }
+    assertFalse(UnitOfWork.current().isPresent());
+
+    var outside = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+    assertNotSame(outside, repository.get(Key.of("n_key", 1L), Note.class).orElseThrow());
+  }
+
+  @Test
+  public void testQueriesShareInstancesAndReferences() {
+    try (UnitOfWork uow = UnitOfWork.begin()) {
+      var loaded = repository.get(Key.of("n_key", 1L), Note.class).orElseThrow();
+      var notes =
+          repository.queryEntity(
+              new SqlQuery().where("progress_id = ?", 1).primaryKey("n_key"), Note.class);
+
+      assertEquals(2, notes.size());
+      assertTrue(notes.contains(loaded));
+      assertSame(loaded, notes.stream().filter(n -> n.getId() == 1L).findFirst().orElseThrow());
+      assertSame(notes.get(0).getProgress(), notes.get(1).getProgress());
+      assertEquals(2, uow.size());
+    }
+  }
+
+  @Test
+  public void testWritesUpdateTheIdentityMap() {
+    try (UnitOfWork uow = UnitOfWork.begin()) {
+      var note = new Note();
+      note.setNoteContent("fresh");
+      note.setProgress(new Progress());
+      note.getProgress().setRefs(Key.of("id", 1L));
+      var key = repository.save(note).orElseThrow();
+      assertSame(note, repository.get(key, Note.class).orElseThrow());
+
+      repository.delete(note);
+      assertFalse(uow.find(Note.class, key).isPresent());
+      assertFalse(repository.get(key, Note.class).isPresent());
+    }
+  }
+
+  @Test
+  public void testNestedUnitsOfWork() {
+    UnitOfWork outer = UnitOfWork.begin();
+    UnitOfWork inner = UnitOfWork.begin();
+    assertSame(inner, UnitOfWork.current().orElseThrow());
+    assertThrows(IllegalStateException.class, outer::close);
+    inner.close();
+    assertSame(outer, UnitOfWork.current().orElseThrow());
+    outer.close();
+    assertFalse(UnitOfWork.current().isPresent());
+  }
+
+  @BeforeEach
+  public void setUp() {
+    db = new EmbeddedDatabaseBuilder().addDefaultScripts().setName("UnitOfWorkTest").build();
+    jdbc = spy(new JdbcTemplate(db));
+    repository = new NoteRepository(jdbc);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    db.shutdown();
+  }
+}
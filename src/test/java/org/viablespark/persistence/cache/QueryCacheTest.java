@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.viablespark.persistence.Contractor;
+import org.viablespark.persistence.Note;
+
+public class QueryCacheTest {
+
+  private static final String SQL = "SELECT * FROM contractor WHERE sc_name = ?";
+
+  private final AtomicLong now = new AtomicLong();
+  private final QueryCache cache = new QueryCache(10, Duration.ofSeconds(30), now::get);
+
+  @Test
+  public void testHitsReturnCopies() {
+    var contractor = new Contractor("sc_key", 1L);
+    contractor.setName("acme");
+    cache.put(
+        Contractor.class, SQL, new Object[] {"acme"}, List.of(contractor), cache.generation());
+    contractor.setName("changed");
+
+    var first = cache.get(Contractor.class, SQL, new Object[] {"acme"}).orElseThrow();
+    assertEquals("acme", first.get(0).getName());
+    first.get(0).setName("changed too");
+    var second = cache.get(Contractor.class, SQL, new Object[] {"acme"}).orElseThrow();
+    assertNotSame(first.get(0), second.get(0));
+    assertEquals("acme", second.get(0).getName());
+
+    assertFalse(cache.get(Contractor.class, SQL, new Object[] {"other"}).isPresent());
+    assertFalse(cache.get(Note.class, SQL, new Object[] {"acme"}).isPresent());
+    assertEquals(new CacheStats(2, 2, 0, 2), cache.stats());
+  }
+
+  @Test
+  public void testInvalidateByTable() {
+    long generation = cache.generation();
+    cache.put(Contractor.class, SQL, new Object[] {"a"}, List.of(), generation);
+    cache.put(Note.class, "SELECT * FROM note", new Object[0], List.of(), generation);
+
+    cache.invalidate("contractor");
+    assertFalse(cache.get(Contractor.class, SQL, new Object[] {"a"}).isPresent());
+    assertTrue(cache.get(Note.class, "SELECT * FROM note", new Object[0]).isPresent());
+
+    cache.put(Contractor.class, SQL, new Object[] {"a"}, List.of(), generation);
+    assertFalse(cache.get(Contractor.class, SQL, new Object[] {"a"}).isPresent());
+  }
+
+  @Test
+  public void testWeightAndTimeToLiveBoundEntries() {
+    for (long i = 0; i < 4; i++) {
+      var rows = List.of(new Contractor("sc_key", i), new Contractor("sc_key", i + 10));
+      cache.put(Contractor.class, SQL, new Object[] {i}, rows, cache.generation());
+    }
+    assertEquals(new CacheStats(0, 0, 1, 9), cache.stats());
+    assertFalse(cache.get(Contractor.class, SQL, new Object[] {0L}).isPresent());
+    assertTrue(cache.get(Contractor.class, SQL, new Object[] {3L}).isPresent());
+
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    assertFalse(cache.get(Contractor.class, SQL, new Object[] {3L}).isPresent());
+    assertEquals(6, cache.stats().size());
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.viablespark.persistence.Contractor;
+import org.viablespark.persistence.Key;
+import org.viablespark.persistence.Note;
+import org.viablespark.persistence.Progress;
+
+public class SegmentedLruCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  public void testCopiesOnPutAndRead() {
+    var cache = new SegmentedLruCache(10, Duration.ofMinutes(1), now::get);
+    var note = new Note();
+    note.setRefs(Key.of("n_key", 1L));
+    note.setNoteContent("original");
+    note.setProgress(new Progress());
+    note.getProgress().setRefs(Key.of("id", 3L));
+    cache.put(note);
+    note.setNoteContent("changed after put");
+
+    var first = cache.get(Note.class, Key.of("n_key", 1L)).orElseThrow();
+    assertEquals("original", first.getNoteContent());
+    assertEquals(Key.of("n_key", 1L), first.getRefs());
+    assertEquals(3L, first.getProgress().getId());
+    assertNotSame(note.getProgress(), first.getProgress());
+
+    first.setNoteContent("changed after get");
+    first.getRefs().primaryKey().setValue(2L);
+    var second = cache.get(Note.class, Key.of("n_key", 1L)).orElseThrow();
+    assertNotSame(first, second);
+    assertEquals("original", second.getNoteContent());
+    assertEquals(1L, second.getId());
+  }
+
+  @Test
+  public void testEntriesExpire() {
+    var cache = new SegmentedLruCache(10, Duration.ofSeconds(5), now::get);
+    cache.put(new Contractor("sc_key", 1L));
+    assertTrue(cache.get(Contractor.class, Key.of("sc_key", 1L)).isPresent());
+
+    now.addAndGet(Duration.ofSeconds(5).toNanos());
+    assertFalse(cache.get(Contractor.class, Key.of("sc_key", 1L)).isPresent());
+    assertEquals(new CacheStats(1, 1, 0, 0), cache.stats());
+  }
+
+  @Test
+  public void testFrequentlyReadEntriesSurviveScans() {
+    var cache = new SegmentedLruCache(1000, Duration.ofMinutes(1), now::get);
+    for (long id = 1; id <= 5; id++) {
+      cache.put(new Contractor("sc_key", id));
+      cache.get(Contractor.class, Key.of("sc_key", id));
+    }
+    for (long id = 100; id < 5100; id++) {
+      cache.put(new Contractor("sc_key", id));
+    }
+
+    for (long id = 1; id <= 5; id++) {
+      assertTrue(cache.get(Contractor.class, Key.of("sc_key", id)).isPresent(), "hot " + id);
+    }
+    assertFalse(cache.get(Contractor.class, Key.of("sc_key", 100L)).isPresent());
+    CacheStats stats = cache.stats();
+    assertTrue(stats.size() <= 1008);
+    assertEquals(5005 - stats.size(), stats.evictionCount());
+    assertEquals(10, stats.hitCount());
+    assertEquals(1, stats.missCount());
+  }
+
+  @Test
+  public void testEvictAndClear() {
+    var cache = new SegmentedLruCache(4, Duration.ofMinutes(1));
+    cache.put(new Contractor("sc_key", 1L));
+    cache.put(new Contractor("sc_key", 2L));
+    cache.evict(Contractor.class, Key.of("sc_key", 1L));
+    assertFalse(cache.get(Contractor.class, Key.of("sc_key", 1L)).isPresent());
+    assertTrue(cache.get(Contractor.class, Key.of("sc_key", 2L)).isPresent());
+    cache.clear();
+    assertEquals(0, cache.stats().size());
+    assertThrows(IllegalArgumentException.class, () -> new SegmentedLruCache(0, Duration.ZERO));
+  }
+}
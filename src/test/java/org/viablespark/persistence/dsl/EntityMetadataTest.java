@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.viablespark.persistence.Note;
+import org.viablespark.persistence.Proposal;
+import org.viablespark.persistence.PurchaseOrder;
+
+class EntityMetadataTest {
+
+  @Test
+  void cachesOneDescriptorPerClass() {
+    assertSame(EntityMetadata.of(Proposal.class), EntityMetadata.of(Proposal.class));
+  }
+
+  @Test
+  void resolvesTableAndPrimaryKey() {
+    var proposal = EntityMetadata.of(Proposal.class);
+    assertEquals("est_proposal", proposal.tableName());
+    assertEquals("pr_key", proposal.primaryKey().orElseThrow());
+
+    var order = EntityMetadata.of(PurchaseOrder.class);
+    assertEquals("purchase_order", order.tableName());
+    assertTrue(order.primaryKey().isEmpty());
+  }
+
+  @Test
+  void resolvesFieldAndMethodAnnotations() {
+    var note = EntityMetadata.of(Note.class);
+    assertEquals(
+        List.of("getDateTaken", "getExtra", "getNoteContent", "getProgress"),
+        names(note.columns()));
+    assertEquals(List.of("getDateTaken", "getExtra", "getNoteContent"), names(note.namedFields()));
+    assertEquals(List.of("getProgress"), names(note.foreignRefs()));
+
+    var skipped = note.properties().stream().filter(p -> p.name().equals("getNoGood")).findFirst();
+    assertTrue(skipped.orElseThrow().isSkipped());
+    assertTrue(skipped.get().setter().isPresent());
+  }
+
+  @Test
+  void keepsUnkeyedReferencesOutOfForeignRefs() {
+    var order = EntityMetadata.of(PurchaseOrder.class);
+    assertEquals(List.of("getNote", "getSupplierRef"), names(order.foreignRefs()));
+    assertFalse(order.columns().stream().anyMatch(EntityMetadata.Property::isRefValue));
+  }
+
+  @Test
+  void readsAndWritesThroughAccessorHandles() throws Exception {
+    var metadata = EntityMetadata.of(Note.class);
+    var note = (Note) metadata.newInstance();
+    var content = property(metadata, "getNoteContent");
+
+    content.set(note, "handled");
+    assertEquals("handled", note.getNoteContent());
+    assertEquals("handled", content.get(note));
+  }
+
+  @Test
+  void reportsMissingSetterAndSetterFailures() throws Exception {
+    var readOnly = EntityMetadata.of(ReadOnly.class);
+    assertEquals("fixed", property(readOnly, "getValue").get(new ReadOnly()));
+    assertThrows(
+        NoSuchMethodException.class,
+        () -> property(readOnly, "getValue").set(new ReadOnly(), "other"));
+
+    var order = new PurchaseOrder();
+    assertThrows(
+        InvocationTargetException.class,
+        () ->
+            property(EntityMetadata.of(PurchaseOrder.class), "getPrimitiveExampleId")
+                .set(order, null));
+  }
+
+  @Test
+  void ignoresStaticAndParameterizedGetters() throws Exception {
+    var metadata = EntityMetadata.of(Oddities.class);
+    assertEquals(List.of("getName", "getSecret"), names(metadata.properties()));
+    assertEquals(List.of("getName"), names(metadata.columns()));
+
+    var source = new Oddities();
+    source.setName("visible");
+    source.setSecret("hidden");
+    var copy = (Oddities) metadata.copy(source);
+    assertEquals("visible", copy.getName());
+    assertEquals("hidden", copy.getSecret());
+  }
+
+  private static EntityMetadata.Property property(EntityMetadata metadata, String name) {
+    return metadata.properties().stream()
+        .filter(p -> p.name().equals(name))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  static class ReadOnly {
+    public String getValue() {
+      return "fixed";
+    }
+  }
+
+  static class Oddities {
+    private String name;
+    private String secret;
+
+    public static String getDefault() {
+      return "default";
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String getName(int length) {
+      return name.substring(0, length);
+    }
+
+    @Skip
+    public String getSecret() {
+      return secret;
+    }
+
+    public void setSecret(String secret) {
+      this.secret = secret;
+    }
+  }
+
+  private static List<String> names(List<EntityMetadata.Property> properties) {
+    return properties.stream().map(EntityMetadata.Property::name).collect(Collectors.toList());
+  }
+}
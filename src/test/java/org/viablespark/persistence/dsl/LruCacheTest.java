@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class LruCacheTest {
+
+  @Test
+  void evictsLeastRecentlyReadEntry() {
+    LruCache<String, Integer> cache = new LruCache<>(2);
+    cache.put("hot", 1);
+    cache.put("once", 2);
+    assertEquals(1, cache.get("hot"));
+
+    cache.put("other", 3);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.get("hot"));
+    assertNull(cache.get("once"));
+    assertEquals(3, cache.get("other"));
+  }
+}
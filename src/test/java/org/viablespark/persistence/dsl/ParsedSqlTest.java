@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 the original author or authors.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package org.viablespark.persistence.dsl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ParsedSqlTest {
+
+  @Test
+  public void testPlaceholderPositions() {
+    ParsedSql parsed = ParsedSql.of("a = ? AND b IN (?,?)");
+    assertArrayEquals(new int[] {4, 16, 18}, parsed.placeholderPositions());
+    assertSame(parsed, ParsedSql.of("a = ? AND b IN (?,?)"));
+  }
+
+  @Test
+  public void testSkipsLiteralsAndComments() {
+    assertEquals(1, count("note = 'why?' AND id = ?"));
+    assertEquals(1, count("note = 'it''s ?' AND id = ?"));
+    assertEquals(1, count("\"odd?column\" = ?"));
+    assertEquals(1, count("id = ? -- trailing ?\n"));
+    assertEquals(2, count("id = ? -- why?\nAND x = ?"));
+    assertEquals(1, count("/* a ? /* nested ? */ still ? */ id = ?"));
+    assertEquals(1, count("body = $$ what? $$ AND id = ?"));
+    assertEquals(1, count("body = $fn$ a ? $ b $fn$ AND id = ?"));
+    assertEquals(2, count("price$ = ? AND $1 = ?"));
+  }
+
+  @Test
+  public void testSkipsJsonOperatorsAndEscapes() {
+    assertEquals(1, count("tags ?| array['a'] AND id = ?"));
+    assertEquals(1, count("tags ?& array['a'] AND id = ?"));
+    assertEquals(1, count("tags ?? 'a' AND id = ?"));
+    assertEquals(1, count("name = ?|| 'suffix'"));
+  }
+
+  @Test
+  public void testSkipsArraySlices() {
+    assertEquals(1, count("SELECT a[1:n], b[:m], c[lo:hi] FROM t WHERE id = ?"));
+    assertEquals(List.of("id"), ParsedSql.of("a[1:n] = x AND id = :id").parameterNames());
+  }
+
+  private static int count(String sql) {
+    return ParsedSql.of(sql).parameterCount();
+  }
+
+  @Test
+  public void testNamedParametersAreRewrittenOnce() {
+    ParsedSql parsed =
+        ParsedSql.of(
+            "owner = :user OR (creator = :user AND x::int = ? AND note <> ':skip' AND s = :s_1)");
+    assertEquals(
+        "owner = ? OR (creator = ? AND x::int = ? AND note <> ':skip' AND s = ?)",
+        parsed.positionalSql());
+    assertEquals(List.of("user", "s_1"), parsed.parameterNames());
+    assertEquals(4, parsed.parameterCount());
+    assertArrayEquals(
+        new Object[] {"u", "u", 7, "s"},
+        parsed.bind(new Object[] {7}, Map.of("user", "u", "s_1", "s")));
+    assertThrows(
+        IllegalArgumentException.class, () -> parsed.bind(new Object[] {7}, Map.of("user", "u")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> parsed.bind(new Object[0], Map.of("user", "u", "s_1", "s")));
+
+    assertFalse(ParsedSql.of("a = ?").hasNamedParameters());
+    assertSame("a = ?", ParsedSql.of("a = ?").positionalSql());
+  }
+}
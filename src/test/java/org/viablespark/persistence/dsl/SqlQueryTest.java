@@ -13,11 +13,18 @@
 
 package org.viablespark.persistence.dsl;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.viablespark.persistence.Key;
+import org.viablespark.persistence.Note;
 
 /** */
 public class SqlQueryTest {
@@ -284,4 +291,167 @@ public class SqlQueryTest {
       assertEquals("SQL must not be null", e.getMessage());
     }
   }
+
+  @Test
+  public void testKeysetPagination() {
+    SqlQuery q = new SqlQuery().where("a=?", 1).orWhere("b=?", 2).after("id", 10L).limit(20);
+    assertEquals("WHERE (a=? OR b=?) AND id > ? ORDER BY id asc LIMIT 20", q.sql());
+    assertArrayEquals(new Object[] {1, 2, 10L}, q.values());
+
+    SqlQuery composite =
+        new SqlQuery()
+            .orderBy("t_key, pr_key")
+            .after(List.of("t_key", "pr_key"), SqlQuery.Direction.DESC, 3L, 1L);
+    assertThrows(IllegalStateException.class, composite::sql);
+
+    SqlQuery mismatched =
+        new SqlQuery()
+            .after(List.of("id"), SqlQuery.Direction.ASC, 5L)
+            .orderBy("id", SqlQuery.Direction.DESC);
+    assertThrows(IllegalStateException.class, mismatched::sql);
+    assertThrows(
+        IllegalStateException.class, new SqlQuery().orderBy("id desc").after("id", 5L)::sql);
+    assertEquals(
+        "WHERE id < ? ORDER BY id DESC",
+        new SqlQuery().orderBy("id DESC").after(List.of("id"), SqlQuery.Direction.DESC, 5L).sql());
+
+    SqlQuery firstPage = new SqlQuery().after(List.of("t_key", "pr_key")).limit(5);
+    assertEquals("ORDER BY t_key asc, pr_key asc LIMIT 5", firstPage.sql());
+    assertEquals(0, firstPage.values().length);
+  }
+
+  @Test
+  public void testContinuationToken() {
+    Key last = Key.of("t_key", 3L).add("pr_key", 1L);
+    String token = SqlQuery.continuationToken(last);
+
+    List<String> columns = List.of("t_key", "pr_key");
+    SqlQuery q = new SqlQuery().orderBy("t_key").orderBy("pr_key asc").afterToken(token, columns);
+    assertEquals("WHERE (t_key, pr_key) > (?, ?) ORDER BY t_key, pr_key asc", q.sql());
+    assertArrayEquals(new Object[] {3L, 1L}, q.values());
+
+    assertEquals(
+        "WHERE x=? ORDER BY t_key asc, pr_key asc",
+        new SqlQuery().where("x=?", 1).afterToken(null, columns).sql());
+    assertThrows(
+        IllegalArgumentException.class, () -> new SqlQuery().afterToken("bogus!", columns));
+  }
+
+  @Test
+  public void testTamperedContinuationTokenIsRejected() {
+    String injected =
+        java.util.Base64.getUrlEncoder()
+            .withoutPadding()
+            .encodeToString(
+                "k1:1=1) OR (1=1; DROP TABLE note --=5"
+                    .getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SqlQuery().afterToken(injected, List.of("n_key")).sql());
+
+    String otherColumns = SqlQuery.continuationToken(Key.of("pr_key", 5L));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SqlQuery().afterToken(otherColumns, List.of("n_key")));
+    String extraColumn = SqlQuery.continuationToken(Key.of("n_key", 5L).add("x", 1L));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SqlQuery().afterToken(extraColumn, List.of("n_key")));
+  }
+
+  @Test
+  public void testCompileRendersOnceAndRebinds() {
+    SqlQuery builder =
+        new SqlQuery().where("progress_id = ?", 1).orderBy("n_key").primaryKey("n_key");
+    CompiledQuery compiled = builder.compile();
+    builder.andWhere("note = ?", "x");
+
+    assertEquals("WHERE progress_id = ? ORDER BY n_key", compiled.sql());
+    assertArrayEquals(new Object[] {1}, compiled.values());
+    assertEquals("n_key", compiled.getPrimaryKeyName());
+
+    CompiledQuery rebound = compiled.bind(2);
+    assertSame(compiled.sql(), rebound.sql());
+    assertArrayEquals(new Object[] {2}, rebound.values());
+    assertArrayEquals(new Object[] {1}, compiled.values());
+    assertSame(rebound.entitySql(Note.class), rebound.entitySql(Note.class));
+    assertTrue(
+        rebound.entitySql(Note.class).endsWith(" FROM note WHERE progress_id = ? ORDER BY n_key"));
+
+    assertThrows(IllegalArgumentException.class, () -> compiled.bind(1, 2));
+    assertThrows(
+        IllegalArgumentException.class, () -> SqlQuery.raw("a = ? AND b = ?", 1).compile());
+  }
+
+  @Test
+  public void testNamedParameters() {
+    SqlQuery q =
+        new SqlQuery()
+            .where("owner = :user")
+            .orWhere("(creator = :user AND dist > ?)", 5)
+            .bind("user", "ann")
+            .bind(":unused", 1);
+    assertEquals("WHERE owner = ? OR (creator = ? AND dist > ?)", q.sql());
+    assertArrayEquals(new Object[] {"ann", "ann", 5}, q.values());
+
+    CompiledQuery compiled = q.compile();
+    assertEquals(q.sql(), compiled.sql());
+    assertArrayEquals(
+        new Object[] {"bob", "bob", 5}, compiled.bind(Map.of("user", "bob")).values());
+    assertThrows(
+        IllegalStateException.class,
+        () -> new SqlQuery().where("a = ?", 1).compile().bind(Map.of()));
+    assertThrows(IllegalArgumentException.class, () -> new SqlQuery().where("a = :a").values());
+
+    SqlQuery raw = SqlQuery.raw("SELECT * FROM t WHERE a = :a AND b = ?", 2).bind("a", 1);
+    assertEquals("SELECT * FROM t WHERE a = ? AND b = ?", raw.sql());
+    assertArrayEquals(new Object[] {1, 2}, raw.values());
+  }
+
+  @Test
+  public void testWhereInPadsToBucketSizes() {
+    SqlQuery q = new SqlQuery().where("progress_id = ?", 1).whereIn("n_key", List.of(3, 4, 5));
+    assertEquals("WHERE progress_id = ? AND n_key IN (?,?,?,?)", q.sql());
+    assertArrayEquals(new Object[] {1, 3, 4, 5, 5}, q.values());
+    assertEquals(
+        q.sql(),
+        new SqlQuery()
+            .whereIn("n_key", List.of(1, 2, 3, 4))
+            .sql()
+            .replace("WHERE n_key", "WHERE progress_id = ? AND n_key"));
+
+    SqlQuery chunked = new SqlQuery().whereIn("n_key", List.of(1, 2, 3, 4, 5), 2);
+    assertEquals("WHERE (n_key IN (?,?) OR n_key IN (?,?) OR n_key IN (?))", chunked.sql());
+    assertArrayEquals(new Object[] {1, 2, 3, 4, 5}, chunked.values());
+
+    SqlQuery empty = new SqlQuery().whereIn("n_key", List.of());
+    assertEquals("WHERE 1 = 0", empty.sql());
+    assertArrayEquals(new Object[0], empty.values());
+
+    assertEquals(1, WithSql.bucketSize(1, 8));
+    assertEquals(8, WithSql.bucketSize(5, 8));
+    assertEquals(6, WithSql.bucketSize(5, 6));
+    assertEquals(6, WithSql.bucketSize(9, 6));
+    assertThrows(IllegalArgumentException.class, () -> WithSql.bucketSize(0, 8));
+  }
+
+  @Test
+  public void testWhereAnyOfPerDialect() {
+    SqlQuery q =
+        new SqlQuery()
+            .where("a = ?", 1)
+            .whereAnyOf("n_key", new long[] {1, 2, 3}, Dialect.POSTGRESQL);
+    assertEquals("WHERE a = ? AND n_key = ANY(?)", q.sql());
+    assertEquals(2, q.values().length);
+    assertEquals(
+        "WHERE n_key IN (UNNEST(?))",
+        new SqlQuery().whereAnyOf("n_key", new long[] {1}, Dialect.HSQLDB).sql());
+    assertEquals(
+        "WHERE n_key IN (?)",
+        new SqlQuery().whereAnyOf("n_key", new long[] {1}, Dialect.STANDARD).sql());
+
+    SqlQuery fallback = new SqlQuery().whereAnyOf("n_key", new long[] {1, 2, 3}, Dialect.MYSQL);
+    assertEquals("WHERE n_key IN (?,?,?,?)", fallback.sql());
+    assertArrayEquals(new Object[] {1L, 2L, 3L, 3L}, fallback.values());
+  }
 }
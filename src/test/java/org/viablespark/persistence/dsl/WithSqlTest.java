@@ -18,6 +18,7 @@ import static org.springframework.test.util.AssertionErrors.assertTrue;
 
 import java.time.LocalDate;
 import java.util.Date;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.viablespark.persistence.*;
 
@@ -124,4 +125,93 @@ public class WithSqlTest {
 
     assertTrue("Should throw", thrown != null);
   }
+
+  @Test
+  public void testStatementsAreCachedPerShape() throws Exception {
+    Proposal first = new Proposal();
+    first.setRefs(Key.of("pr_key", 1L));
+    first.setPropName("first");
+    first.setContractor(new Contractor("sc_key", 1L));
+
+    Proposal second = new Proposal();
+    second.setRefs(Key.of("pr_key", 2L));
+    second.setPropName("second");
+    second.setContractor(new Contractor("sc_key", 2L));
+
+    SqlClause firstUpdate = WithSql.getUpdateStatement(first);
+    SqlClause secondUpdate = WithSql.getUpdateStatement(second);
+    assertEquals(
+        "UPDATE est_proposal SET sc_key=?,dist=?,prop_date=?,prop_id=?,proposal_name=?,submit_deadline=? WHERE pr_key=?",
+        firstUpdate.clause());
+    assertSame(firstUpdate.clause(), secondUpdate.clause());
+    assertArrayEquals(
+        new Object[] {2L, null, null, null, "second", null, 2L}, secondUpdate.values());
+
+    second.setContractor(null);
+    SqlClause insert = WithSql.getInsertStatement(second);
+    assertEquals(
+        "INSERT INTO est_proposal (dist,prop_date,prop_id,proposal_name,submit_deadline) VALUES (?,?,?,?,?)",
+        insert.clause());
+    assertEquals(5, insert.values().length);
+  }
+
+  @Test
+  public void testKeyStatements() {
+    assertEquals(
+        "SELECT n_key,note_date as \"date_taken\",additional as \"extra\",note as \"note_content\",progress_id FROM note WHERE n_key = ?",
+        WithSql.getSelectByKeyStatement(Note.class, "n_key"));
+    assertSame(
+        WithSql.getSelectByKeyStatement(Note.class, "n_key"),
+        WithSql.getSelectByKeyStatement(Note.class, "n_key"));
+    assertEquals(
+        "DELETE FROM note WHERE n_key = ?", WithSql.getDeleteStatement(Note.class, "n_key"));
+  }
+
+  @Test
+  public void testUpsertStatementPerDialect() throws Exception {
+    Note note = new Note();
+    note.setRefs(Key.of("n_key", 7L));
+    note.setNoteContent("content");
+    note.setProgress(new Progress());
+    note.getProgress().setRefs(Key.of("id", 3L));
+
+    SqlClause merge = WithSql.getUpsertStatement(note, Dialect.STANDARD);
+    assertEquals(
+        "MERGE INTO note USING (VALUES (?,?,?,?,?)) AS src (n_key,note_date,additional,note,progress_id) ON (note.n_key = src.n_key)"
+            + " WHEN MATCHED THEN UPDATE SET note_date = src.note_date,additional = src.additional,note = src.note,progress_id = src.progress_id"
+            + " WHEN NOT MATCHED THEN INSERT (n_key,note_date,additional,note,progress_id) VALUES (src.n_key,src.note_date,src.additional,src.note,src.progress_id)",
+        merge.clause());
+    assertArrayEquals(new Object[] {7L, null, null, "content", 3L}, merge.values());
+    assertSame(merge.clause(), WithSql.getUpsertStatement(note, Dialect.STANDARD).clause());
+    assertEquals(merge.clause(), WithSql.getUpsertStatement(note, Dialect.HSQLDB).clause());
+
+    assertEquals(
+        "INSERT INTO note (n_key,note_date,additional,note,progress_id) VALUES (?,?,?,?,?)"
+            + " ON CONFLICT (n_key) DO UPDATE SET note_date = EXCLUDED.note_date,additional = EXCLUDED.additional,note = EXCLUDED.note,progress_id = EXCLUDED.progress_id",
+        WithSql.getUpsertStatement(note, Dialect.POSTGRESQL).clause());
+    assertEquals(
+        "INSERT INTO note (n_key,note_date,additional,note,progress_id) VALUES (?,?,?,?,?)"
+            + " ON DUPLICATE KEY UPDATE note_date = VALUES(note_date),additional = VALUES(additional),note = VALUES(note),progress_id = VALUES(progress_id)",
+        WithSql.getUpsertStatement(note, Dialect.MYSQL).clause());
+  }
+
+  @Test
+  public void testSelectFetchingStatement() {
+    String sql =
+        WithSql.getSelectFetchingStatement(Proposal.class, "pr_key", List.of("contractor"));
+    assertTrue("Entity columns are qualified", sql.startsWith("SELECT est_proposal.pr_key,"));
+    assertTrue(
+        "Joined columns are labelled with the alias",
+        sql.contains("j_contractor.sc_name as \"j_contractor_name\""));
+    assertTrue(
+        "Joined on the foreign key",
+        sql.endsWith(
+            " FROM est_proposal LEFT JOIN contractor j_contractor"
+                + " ON j_contractor.sc_key = est_proposal.sc_key"));
+    assertSame(
+        sql, WithSql.getSelectFetchingStatement(Proposal.class, "pr_key", List.of("contractor")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> WithSql.getSelectFetchingStatement(Proposal.class, "pr_key", List.of("tasks")));
+  }
 }
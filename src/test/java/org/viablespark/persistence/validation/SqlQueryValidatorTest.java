@@ -25,4 +25,11 @@ class SqlQueryValidatorTest {
             IllegalArgumentException.class, () -> SqlQueryValidator.assertPlaceholderCount(query));
     assertTrue(thrown.getMessage().contains("expected 2 values but found 1"));
   }
+
+  @Test
+  void ignoresQuestionMarksInLiteralsAndComments() {
+    SqlQuery query =
+        SqlQuery.raw("SELECT * FROM note WHERE note = 'why?' /* ? */ AND n_key = ?", 1);
+    assertDoesNotThrow(() -> SqlQueryValidator.assertPlaceholderCount(query));
+  }
 }